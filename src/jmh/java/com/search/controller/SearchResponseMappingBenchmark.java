@@ -0,0 +1,102 @@
+package com.search.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.search.model.SearchResult;
+import com.search.service.ElasticsearchSearchService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Search response body construction and serialization
+ *
+ * mapsThenSerialize copies every hit into a HashMap before serializing, as
+ * the controller used to; typedThenSerialize writes the typed body directly.
+ * Run with -prof gc and compare gc.alloc.rate.norm (bytes per operation).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+public class SearchResponseMappingBenchmark {
+
+    @Param({"10", "100"})
+    private int hits;
+
+    private ObjectMapper objectMapper;
+    private ElasticsearchSearchService.SearchResponse searchResponse;
+
+    @Setup
+    public void setup() {
+        // Same date handling as Spring Boot's auto-configured mapper
+        objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        List<SearchResult> results = new ArrayList<>(hits);
+        for (int i = 0; i < hits; i++) {
+            results.add(SearchResult.builder()
+                    .docId("doc-" + i)
+                    .tenantId("tenant-a")
+                    .score(10.0 - i * 0.01)
+                    .snippet("distributed search with elasticsearch ".repeat(5))
+                    .metadata(Map.of("author", "benchmark", "rank", i))
+                    .build());
+        }
+        searchResponse = new ElasticsearchSearchService.SearchResponse(results,
+                new ElasticsearchSearchService.QueryStats(4.2, hits, 5, hits, false, false));
+    }
+
+    @Benchmark
+    public void mapsThenSerialize() throws IOException {
+        List<Map<String, Object>> results = searchResponse.getResults().stream()
+                .map(result -> {
+                    Map<String, Object> resultMap = new HashMap<>();
+                    resultMap.put("docId", result.getDocId());
+                    resultMap.put("score", result.getScore());
+                    resultMap.put("snippet", result.getSnippet());
+                    resultMap.put("metadata", result.getMetadata());
+                    return resultMap;
+                })
+                .collect(Collectors.toList());
+
+        ElasticsearchSearchService.QueryStats stats = searchResponse.getStats();
+        Map<String, Object> statsMap = new HashMap<>();
+        statsMap.put("queryTimeMs", stats.getQueryTimeMs());
+        statsMap.put("docsScanned", stats.getDocsScanned());
+        statsMap.put("shardsQueried", stats.getShardsQueried());
+        statsMap.put("resultsCount", stats.getResultsCount());
+        statsMap.put("cached", stats.isCached());
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("results", results);
+        response.put("stats", statsMap);
+        response.put("tenantId", "tenant-a");
+        response.put("backend", "elasticsearch");
+
+        objectMapper.writeValue(OutputStream.nullOutputStream(), response);
+    }
+
+    @Benchmark
+    public void typedThenSerialize() throws IOException {
+        objectMapper.writeValue(OutputStream.nullOutputStream(),
+                SearchController.searchResponseBody(searchResponse, "tenant-a"));
+    }
+}
@@ -0,0 +1,91 @@
+package com.search.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.search.service.TenantIndexRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-document hot paths: index name derivation, building results from highlighted hits and
+ * Jackson serialization as configured for the Elasticsearch client
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+public class SearchDocumentBenchmark {
+
+    @Param({"100", "2000", "50000"})
+    private int contentLength;
+
+    private static final List<String> FIELDS = List.of("metadata");
+
+    private SearchDocument document;
+    private List<String> fragments;
+    private ObjectMapper objectMapper;
+    private byte[] serialized;
+
+    @Setup
+    public void setup() throws Exception {
+        StringBuilder content = new StringBuilder(contentLength);
+        while (content.length() < contentLength) {
+            content.append("distributed search with elasticsearch ");
+        }
+
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("author", "benchmark");
+        metadata.put("category", "performance");
+        metadata.put("version", 3);
+
+        document = SearchDocument.builder()
+                .docId("doc-00042")
+                .tenantId("Tenant_ACME.Prod")
+                .content(content.substring(0, contentLength))
+                .metadata(metadata)
+                .build();
+
+        // Snippets come from highlighting; one fragment of the default 200 characters
+        fragments = List.of("<em>distributed</em> <em>search</em> with elasticsearch "
+                .repeat(4).substring(0, 200));
+
+        // Same mapper setup as ElasticsearchConfig
+        objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        serialized = objectMapper.writeValueAsBytes(document);
+    }
+
+    @Benchmark
+    public String indexName() {
+        return TenantIndexRegistry.targetName(document.getTenantId());
+    }
+
+    @Benchmark
+    public SearchResult fromHit() {
+        return SearchResult.fromHit(document.getDocId(), document, 1.5, fragments, FIELDS);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return objectMapper.writeValueAsBytes(document);
+    }
+
+    @Benchmark
+    public SearchDocument deserialize() throws Exception {
+        return objectMapper.readValue(serialized, SearchDocument.class);
+    }
+}
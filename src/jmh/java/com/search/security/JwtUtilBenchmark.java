@@ -0,0 +1,68 @@
+package com.search.security;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token verification: a full parse against a claims cache hit
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+public class JwtUtilBenchmark {
+
+    private JwtUtil jwtUtil;
+    private JwtUtil uncached;
+    private String token;
+    private String[] tokens;
+    private int next;
+
+    @Setup
+    public void setup() throws Exception {
+        jwtUtil = jwtUtil(10_000L);
+        token = jwtUtil.generateToken("tenant-a");
+
+        // A one-entry cache cycling through many tokens leaves every call to parse and verify
+        uncached = jwtUtil(1L);
+        tokens = new String[1024];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = uncached.generateToken("tenant-" + i);
+        }
+    }
+
+    @Benchmark
+    public String parseAndVerify() {
+        return uncached.authenticate(tokens[next++ & (tokens.length - 1)]);
+    }
+
+    @Benchmark
+    public String authenticateCached() {
+        return jwtUtil.authenticate(token);
+    }
+
+    private static JwtUtil jwtUtil(long claimsCacheMaxSize) throws Exception {
+        JwtUtil jwtUtil = new JwtUtil();
+        set(jwtUtil, "secret", "benchmark-secret-key-that-is-at-least-256-bits-long-for-hmac");
+        set(jwtUtil, "expiration", 3_600_000L);
+        set(jwtUtil, "claimsCacheMaxSize", claimsCacheMaxSize);
+        jwtUtil.init();
+        return jwtUtil;
+    }
+
+    // Fields are normally injected by Spring's @Value
+    private static void set(JwtUtil jwtUtil, String name, Object value) throws Exception {
+        Field field = JwtUtil.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(jwtUtil, value);
+    }
+}
@@ -0,0 +1,65 @@
+package com.search.security;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limit checks from many request threads, on one hot tenant and spread across tenants,
+ * plus a batch charged per document
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Threads(8)
+public class TenantRateLimiterBenchmark {
+
+    private TenantRateLimiter rateLimiter;
+    private String[] tenants;
+
+    @Setup
+    public void setup() {
+        // High enough that the benchmark measures the check, not rejections
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setDefaults(new RateLimitProperties.Quota(1_000_000_000.0, 1_000_000_000L));
+        rateLimiter = new TenantRateLimiter(properties);
+        tenants = new String[64];
+        for (int i = 0; i < tenants.length; i++) {
+            tenants[i] = "tenant-" + i;
+        }
+    }
+
+    @Benchmark
+    public TenantRateLimiter.Decision singleTenant() {
+        return rateLimiter.tryAcquire("tenant-hot", TenantRateLimiter.Operation.SEARCH, 1);
+    }
+
+    @Benchmark
+    public TenantRateLimiter.Decision manyTenants(ThreadIndex index) {
+        return rateLimiter.tryAcquire(tenants[index.next() & (tenants.length - 1)],
+                TenantRateLimiter.Operation.SEARCH, 1);
+    }
+
+    @Benchmark
+    public TenantRateLimiter.Decision weightedBatch() {
+        return rateLimiter.tryAcquire("tenant-hot", TenantRateLimiter.Operation.BATCH, 100);
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadIndex {
+        private int counter;
+
+        int next() {
+            return counter++;
+        }
+    }
+}
@@ -0,0 +1,770 @@
+package com.search.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * In-process stand-in for the subset of the Elasticsearch REST API used by
+ * the service: index exists/create/get, index, bulk, search, msearch, get,
+ * delete, count, point-in-time open/close/search, aliases, reindex and
+ * delete by query (as instantly completed tasks), terms aggregations, index
+ * stats, cluster health and node discovery
+ *
+ * Documents are kept in memory and matched with a naive term scan; _source
+ * includes, a simple content highlight and tenant_id alias filters are
+ * honored, and gzip request bodies are accepted. Each request can be
+ * delayed and can fail with a configurable probability.
+ */
+@Slf4j
+public class FakeElasticsearchServer implements AutoCloseable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Map<String, Map<String, JsonNode>> indices = new ConcurrentHashMap<>();
+    private final Map<String, Alias> aliases = new ConcurrentHashMap<>();
+    private final Map<String, JsonNode> completedTasks = new ConcurrentHashMap<>();
+    private final AtomicLong seqNo = new AtomicLong();
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private final long latencyMicros;
+    private final long jitterMicros;
+    private final double errorRate;
+
+    public FakeElasticsearchServer(long latencyMicros, long jitterMicros, double errorRate) throws IOException {
+        this.latencyMicros = latencyMicros;
+        this.jitterMicros = jitterMicros;
+        this.errorRate = errorRate;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        this.executor = Executors.newFixedThreadPool(256, r -> {
+            Thread thread = new Thread(r, "fake-es");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    public FakeElasticsearchServer start() {
+        server.start();
+        log.info("Fake Elasticsearch listening on port {}", port());
+        return this;
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            simulateLatency();
+
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                respond(exchange, 429, error("es_rejected_execution_exception", "injected rejection", 429));
+                return;
+            }
+
+            route(exchange);
+        } catch (RuntimeException e) {
+            log.error("Fake Elasticsearch failed on {} {}: {}",
+                    exchange.getRequestMethod(), exchange.getRequestURI(), e.getMessage(), e);
+            respond(exchange, 500, error("exception", String.valueOf(e.getMessage()), 500));
+        }
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        URI uri = exchange.getRequestURI();
+        String[] parts = uri.getPath().substring(1).split("/");
+
+        if (parts[0].equals("_cluster") && parts.length > 1 && parts[1].equals("health")) {
+            respond(exchange, 200, clusterHealth());
+        } else if (parts[0].equals("_nodes")) {
+            respond(exchange, 200, nodes());
+        } else if (parts[0].equals("_aliases")) {
+            respond(exchange, 200, updateAliases(readJson(requestBody(exchange))));
+        } else if (parts[0].equals("_reindex")) {
+            respond(exchange, 200, reindex(readJson(requestBody(exchange))));
+        } else if (parts[0].equals("_tasks") && parts.length == 2) {
+            JsonNode task = completedTasks.get(parts[1]);
+            respond(exchange, task != null ? 200 : 404,
+                    task != null ? task : error("resource_not_found_exception", "task not found", 404));
+        } else if (parts[0].equals("_bulk")) {
+            respond(exchange, 200, bulk(requestBody(exchange)));
+        } else if (parts[0].equals("_msearch")) {
+            respond(exchange, 200, msearch(requestBody(exchange)));
+        } else if (parts[0].equals("_pit")) {
+            ObjectNode body = MAPPER.createObjectNode();
+            body.put("succeeded", true);
+            body.put("num_freed", 1);
+            respond(exchange, 200, body);
+        } else if (parts[0].equals("_search")) {
+            // Point-in-time search: the PIT id is the encoded index name
+            JsonNode request = readJson(requestBody(exchange));
+            String index = new String(Base64.getUrlDecoder().decode(request.path("pit").path("id").asText()),
+                    StandardCharsets.UTF_8);
+            Map<String, JsonNode> docs = visible(index);
+            if (docs == null) {
+                respond(exchange, 404, error("search_context_missing_exception", "No search context found", 404));
+            } else {
+                respond(exchange, 200, search(index, docs, request));
+            }
+        } else if (parts.length == 1) {
+            indexLevel(exchange, method, parts[0]);
+        } else if (parts[1].equals("_search")) {
+            Map<String, JsonNode> docs = visible(parts[0]);
+            if (docs == null) {
+                respond(exchange, 404, indexNotFound(parts[0]));
+            } else {
+                respond(exchange, 200, search(parts[0], docs, readJson(requestBody(exchange))));
+            }
+        } else if (parts[1].equals("_pit")) {
+            if (visible(parts[0]) == null) {
+                respond(exchange, 404, indexNotFound(parts[0]));
+            } else {
+                ObjectNode body = MAPPER.createObjectNode();
+                body.put("id", Base64.getUrlEncoder().encodeToString(parts[0].getBytes(StandardCharsets.UTF_8)));
+                respond(exchange, 200, body);
+            }
+        } else if (parts[1].equals("_delete_by_query")) {
+            respond(exchange, 200, deleteByQuery(parts[0], readJson(requestBody(exchange))));
+        } else if (parts[1].equals("_refresh")) {
+            // Writes are visible immediately, so there is nothing to refresh
+            ObjectNode body = MAPPER.createObjectNode();
+            body.set("_shards", shards());
+            respond(exchange, 200, body);
+        } else if (parts[1].equals("_settings")) {
+            ObjectNode body = MAPPER.createObjectNode();
+            body.put("acknowledged", true);
+            respond(exchange, 200, body);
+        } else if (parts[1].equals("_stats")) {
+            respond(exchange, 200, stats(parts[0]));
+        } else if (parts[1].equals("_count")) {
+            Map<String, JsonNode> docs = visible(parts[0]);
+            if (docs == null) {
+                respond(exchange, 404, indexNotFound(parts[0]));
+            } else {
+                ObjectNode body = MAPPER.createObjectNode();
+                body.put("count", docs.size());
+                body.set("_shards", shards());
+                respond(exchange, 200, body);
+            }
+        } else if (parts[1].equals("_doc") && parts.length == 3) {
+            document(exchange, method, parts[0], parts[2]);
+        } else {
+            respond(exchange, 400, error("illegal_argument_exception",
+                    "unsupported endpoint " + method + " " + uri.getPath(), 400));
+        }
+    }
+
+    private void indexLevel(HttpExchange exchange, String method, String index) throws IOException {
+        switch (method) {
+            case "HEAD" -> respond(exchange, indices.containsKey(resolve(index)) ? 200 : 404, null);
+            case "PUT" -> {
+                if (indices.putIfAbsent(index, new ConcurrentHashMap<>()) != null) {
+                    respond(exchange, 400, error("resource_already_exists_exception", "index exists", 400));
+                    return;
+                }
+                ObjectNode body = MAPPER.createObjectNode();
+                body.put("acknowledged", true);
+                body.put("shards_acknowledged", true);
+                body.put("index", index);
+                respond(exchange, 200, body);
+            }
+            case "GET" -> {
+                String concrete = resolve(index);
+                if (!indices.containsKey(concrete)) {
+                    respond(exchange, 404, indexNotFound(index));
+                    return;
+                }
+                ObjectNode body = MAPPER.createObjectNode();
+                ObjectNode state = body.putObject(concrete);
+                ObjectNode indexAliases = state.putObject("aliases");
+                aliases.forEach((name, alias) -> {
+                    if (alias.index().equals(concrete)) {
+                        indexAliases.putObject(name);
+                    }
+                });
+                state.putObject("mappings");
+                ObjectNode settings = state.putObject("settings").putObject("index");
+                settings.put("number_of_shards", "5");
+                settings.put("number_of_replicas", "2");
+                respond(exchange, 200, body);
+            }
+            case "DELETE" -> {
+                if (indices.remove(index) == null) {
+                    respond(exchange, 404, indexNotFound(index));
+                    return;
+                }
+                aliases.values().removeIf(alias -> alias.index().equals(index));
+                ObjectNode body = MAPPER.createObjectNode();
+                body.put("acknowledged", true);
+                respond(exchange, 200, body);
+            }
+            default -> respond(exchange, 405, error("illegal_argument_exception", "method not allowed", 405));
+        }
+    }
+
+    private void document(HttpExchange exchange, String method, String index, String id) throws IOException {
+        switch (method) {
+            case "PUT", "POST" -> {
+                JsonNode source = readJson(requestBody(exchange));
+                boolean created = indices.computeIfAbsent(resolve(index), k -> new ConcurrentHashMap<>())
+                        .put(id, source) == null;
+                respond(exchange, created ? 201 : 200, writeResult(index, id, created ? "created" : "updated"));
+            }
+            case "GET" -> {
+                Map<String, JsonNode> docs = visible(index);
+                if (docs == null) {
+                    respond(exchange, 404, indexNotFound(index));
+                    return;
+                }
+                JsonNode source = docs.get(id);
+                ObjectNode body = MAPPER.createObjectNode();
+                body.put("_index", index);
+                body.put("_id", id);
+                body.put("found", source != null);
+                if (source != null) {
+                    body.put("_version", 1);
+                    body.put("_seq_no", 0);
+                    body.put("_primary_term", 1);
+                    body.set("_source", source);
+                }
+                respond(exchange, source != null ? 200 : 404, body);
+            }
+            case "DELETE" -> {
+                Map<String, JsonNode> docs = indices.get(resolve(index));
+                if (docs == null) {
+                    respond(exchange, 404, indexNotFound(index));
+                    return;
+                }
+                boolean deleted = docs.remove(id) != null;
+                respond(exchange, deleted ? 200 : 404, writeResult(index, id, deleted ? "deleted" : "not_found"));
+            }
+            default -> respond(exchange, 405, error("illegal_argument_exception", "method not allowed", 405));
+        }
+    }
+
+    private ObjectNode bulk(InputStream body) throws IOException {
+        long start = System.nanoTime();
+        ArrayNode items = MAPPER.createArrayNode();
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            JsonNode action = MAPPER.readTree(line);
+            String op = action.fieldNames().next();
+            JsonNode meta = action.get(op);
+            String index = resolve(meta.path("_index").asText());
+            String id = meta.path("_id").asText();
+
+            ObjectNode result;
+            if (op.equals("delete")) {
+                Map<String, JsonNode> docs = indices.get(index);
+                boolean deleted = docs != null && docs.remove(id) != null;
+                result = writeResult(index, id, deleted ? "deleted" : "not_found");
+                result.put("status", deleted ? 200 : 404);
+            } else {
+                JsonNode source = MAPPER.readTree(reader.readLine());
+                boolean created = indices.computeIfAbsent(index, k -> new ConcurrentHashMap<>())
+                        .put(id, source) == null;
+                result = writeResult(index, id, created ? "created" : "updated");
+                result.put("status", created ? 201 : 200);
+            }
+            items.addObject().set(op, result);
+        }
+
+        ObjectNode response = MAPPER.createObjectNode();
+        response.put("took", (System.nanoTime() - start) / 1_000_000);
+        response.put("errors", false);
+        response.set("items", items);
+        return response;
+    }
+
+    private ObjectNode msearch(InputStream body) throws IOException {
+        long start = System.nanoTime();
+        ArrayNode responses = MAPPER.createArrayNode();
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        String headerLine;
+        while ((headerLine = reader.readLine()) != null) {
+            if (headerLine.isBlank()) {
+                continue;
+            }
+            JsonNode header = MAPPER.readTree(headerLine);
+            JsonNode request = MAPPER.readTree(reader.readLine());
+            JsonNode indexNode = header.path("index");
+            String index = indexNode.isArray() ? indexNode.path(0).asText() : indexNode.asText();
+
+            Map<String, JsonNode> docs = visible(index);
+            ObjectNode item = docs == null ? indexNotFound(index) : search(index, docs, request);
+            item.put("status", docs == null ? 404 : 200);
+            responses.add(item);
+        }
+
+        ObjectNode response = MAPPER.createObjectNode();
+        response.put("took", (System.nanoTime() - start) / 1_000_000);
+        response.set("responses", responses);
+        return response;
+    }
+
+    private ObjectNode search(String index, Map<String, JsonNode> docs, JsonNode request) {
+        long start = System.nanoTime();
+        int size = request.path("size").asInt(10);
+        String queryText = findMatchQuery(request.path("query"));
+        String[] terms = queryText == null ? new String[0] : queryText.toLowerCase(Locale.ROOT).split("\\s+");
+
+        List<Map.Entry<String, Double>> matches = new ArrayList<>();
+        for (Map.Entry<String, JsonNode> entry : docs.entrySet()) {
+            String content = entry.getValue().path("content").asText("").toLowerCase(Locale.ROOT);
+            double score = 0;
+            for (String term : terms) {
+                if (!term.isEmpty() && content.contains(term)) {
+                    score += 1;
+                }
+            }
+            if (score > 0 || terms.length == 0) {
+                matches.add(Map.entry(entry.getKey(), score));
+            }
+        }
+        matches.sort(Map.Entry.<String, Double>comparingByValue(Comparator.reverseOrder())
+                .thenComparing(Map.Entry.comparingByKey()));
+
+        // Sort values are [score, position], or [position] for a single sort key;
+        // search_after resumes after the position
+        JsonNode searchAfter = request.get("search_after");
+        int from = searchAfter != null && searchAfter.size() > 0 ? searchAfter.get(searchAfter.size() - 1).asInt() + 1 : 0;
+        boolean sorted = request.has("sort") || request.has("pit");
+        boolean withScore = request.path("sort").size() != 1;
+
+        ObjectNode response = MAPPER.createObjectNode();
+        response.put("took", (System.nanoTime() - start) / 1_000_000);
+        response.put("timed_out", false);
+        response.set("_shards", shards());
+        ObjectNode hits = response.putObject("hits");
+        ObjectNode total = hits.putObject("total");
+        total.put("value", matches.size());
+        total.put("relation", "eq");
+        ArrayNode hitArray = hits.putArray("hits");
+        for (int position = from; position < Math.min(from + size, matches.size()); position++) {
+            Map.Entry<String, Double> match = matches.get(position);
+            ObjectNode hit = hitArray.addObject();
+            hit.put("_index", index);
+            hit.put("_id", match.getKey());
+            hit.put("_score", match.getValue());
+            if (sorted) {
+                ArrayNode sort = hit.putArray("sort");
+                if (withScore) {
+                    sort.add(match.getValue());
+                }
+                sort.add(position);
+            }
+            JsonNode source = docs.get(match.getKey());
+            hit.set("_source", filterSource(source, request.get("_source")));
+            JsonNode highlightField = request.path("highlight").path("fields").get("content");
+            if (highlightField != null) {
+                hit.putObject("highlight").putArray("content")
+                        .add(highlight(source.path("content").asText(""), terms, request.get("highlight"), highlightField));
+            }
+        }
+        hits.put("max_score", matches.isEmpty() ? 0.0 : matches.get(0).getValue());
+        JsonNode aggregations = request.has("aggregations") ? request.get("aggregations") : request.get("aggs");
+        if (aggregations != null) {
+            response.set("aggregations", termsAggregations(aggregations, docs, matches));
+        }
+        if (request.has("pit")) {
+            response.put("pit_id", request.path("pit").path("id").asText());
+        }
+        return response;
+    }
+
+    /**
+     * Apply _source includes: top-level fields and one level of object paths such as metadata.category
+     */
+    private static JsonNode filterSource(JsonNode source, JsonNode sourceSpec) {
+        JsonNode includes = sourceSpec == null ? null
+                : sourceSpec.isArray() ? sourceSpec : sourceSpec.get("includes");
+        if (includes == null || !includes.isArray()) {
+            return source;
+        }
+        ObjectNode filtered = MAPPER.createObjectNode();
+        for (JsonNode include : includes) {
+            String[] path = include.asText().split("\\.", 2);
+            JsonNode value = source.get(path[0]);
+            if (value == null) {
+                continue;
+            }
+            if (path.length == 1) {
+                filtered.set(path[0], value);
+            } else if (value.has(path[1])) {
+                ObjectNode parent = filtered.has(path[0]) ? (ObjectNode) filtered.get(path[0]) : filtered.putObject(path[0]);
+                parent.set(path[1], value.get(path[1]));
+            }
+        }
+        return filtered;
+    }
+
+    /**
+     * One fragment around the first matching term, or the start of the text (no_match_size)
+     */
+    private static String highlight(String content, String[] terms, JsonNode highlight, JsonNode field) {
+        int fragmentSize = field.path("fragment_size").asInt(100);
+        String preTag = highlight.path("pre_tags").path(0).asText("<em>");
+        String postTag = highlight.path("post_tags").path(0).asText("</em>");
+
+        String lower = content.toLowerCase(Locale.ROOT);
+        for (String term : terms) {
+            int at = term.isEmpty() ? -1 : lower.indexOf(term);
+            if (at >= 0) {
+                int start = Math.max(0, at - fragmentSize / 2);
+                int end = Math.min(content.length(), start + fragmentSize);
+                return content.substring(start, at) + preTag + content.substring(at, at + term.length()) + postTag
+                        + content.substring(Math.min(at + term.length(), end), end);
+            }
+        }
+        return content.substring(0, Math.min(content.length(), field.path("no_match_size").asInt(0)));
+    }
+
+    /**
+     * Find the first match query text anywhere in the query tree
+     */
+    private static String findMatchQuery(JsonNode query) {
+        JsonNode match = query.get("match");
+        if (match != null && match.fields().hasNext()) {
+            JsonNode field = match.fields().next().getValue();
+            return field.isTextual() ? field.asText() : field.path("query").asText(null);
+        }
+        for (JsonNode child : query) {
+            if (child.isContainerNode()) {
+                String found = findMatchQuery(child);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+        return null;
+    }
+
+    private ObjectNode writeResult(String index, String id, String result) {
+        ObjectNode body = MAPPER.createObjectNode();
+        body.put("_index", index);
+        body.put("_id", id);
+        body.put("_version", 1);
+        body.put("result", result);
+        body.set("_shards", shards());
+        body.put("_seq_no", seqNo.getAndIncrement());
+        body.put("_primary_term", 1);
+        return body;
+    }
+
+    private static ObjectNode shards() {
+        ObjectNode shards = MAPPER.createObjectNode();
+        shards.put("total", 5);
+        shards.put("successful", 5);
+        shards.put("skipped", 0);
+        shards.put("failed", 0);
+        return shards;
+    }
+
+    private ObjectNode clusterHealth() {
+        ObjectNode body = MAPPER.createObjectNode();
+        body.put("cluster_name", "fake-elasticsearch");
+        body.put("status", "green");
+        body.put("timed_out", false);
+        body.put("number_of_nodes", 1);
+        body.put("number_of_data_nodes", 1);
+        body.put("active_primary_shards", indices.size() * 5);
+        body.put("active_shards", indices.size() * 5);
+        body.put("relocating_shards", 0);
+        body.put("initializing_shards", 0);
+        body.put("unassigned_shards", 0);
+        body.put("delayed_unassigned_shards", 0);
+        body.put("number_of_pending_tasks", 0);
+        body.put("number_of_in_flight_fetch", 0);
+        body.put("task_max_waiting_in_queue_millis", 0);
+        body.put("active_shards_percent_as_number", 100.0);
+        return body;
+    }
+
+    /**
+     * A single data node publishing this server's address, as the sniffer reads it
+     */
+    private ObjectNode nodes() {
+        ObjectNode body = MAPPER.createObjectNode();
+        body.put("cluster_name", "fake-elasticsearch");
+        ObjectNode node = body.putObject("nodes").putObject("fake-node");
+        node.put("name", "fake-node");
+        node.put("version", "8.11.1");
+        node.putArray("roles").add("master").add("data").add("ingest");
+        node.putObject("http").put("publish_address", "127.0.0.1:" + port());
+        return body;
+    }
+
+    /**
+     * Alias add/remove actions; a filter is read as a term on tenant_id
+     */
+    private ObjectNode updateAliases(JsonNode request) {
+        for (JsonNode action : request.path("actions")) {
+            JsonNode add = action.get("add");
+            JsonNode remove = action.get("remove");
+            if (add != null) {
+                JsonNode tenant = add.path("filter").path("term").path("tenant_id");
+                String tenantId = tenant.isObject() ? tenant.path("value").asText() : tenant.textValue();
+                aliases.put(add.path("alias").asText(), new Alias(add.path("index").asText(), tenantId));
+            } else if (remove != null) {
+                aliases.remove(remove.path("alias").asText());
+            }
+        }
+        ObjectNode body = MAPPER.createObjectNode();
+        body.put("acknowledged", true);
+        return body;
+    }
+
+    private String resolve(String name) {
+        Alias alias = aliases.get(name);
+        return alias != null ? alias.index() : name;
+    }
+
+    /**
+     * Documents readable through an index or alias, or null if neither exists
+     */
+    private Map<String, JsonNode> visible(String name) {
+        if (name.endsWith("*")) {
+            Map<String, JsonNode> merged = new HashMap<>();
+            matchingIndices(name).forEach(index -> merged.putAll(indices.get(index)));
+            return merged;
+        }
+        Alias alias = aliases.get(name);
+        Map<String, JsonNode> docs = indices.get(alias != null ? alias.index() : name);
+        if (docs == null || alias == null || alias.tenantId() == null) {
+            return docs;
+        }
+        Map<String, JsonNode> filtered = new HashMap<>();
+        docs.forEach((id, doc) -> {
+            if (alias.tenantId().equals(doc.path("tenant_id").asText())) {
+                filtered.put(id, doc);
+            }
+        });
+        return filtered;
+    }
+
+    private List<String> matchingIndices(String pattern) {
+        String prefix = pattern.substring(0, pattern.length() - 1);
+        return indices.keySet().stream().filter(index -> index.startsWith(prefix)).toList();
+    }
+
+    /**
+     * Terms aggregations over the matching documents, with typed keys as the client requests
+     */
+    private static ObjectNode termsAggregations(JsonNode aggregations, Map<String, JsonNode> docs,
+                                                List<Map.Entry<String, Double>> matches) {
+        ObjectNode result = MAPPER.createObjectNode();
+        aggregations.fields().forEachRemaining(aggregation -> {
+            JsonNode terms = aggregation.getValue().path("terms");
+            String field = terms.path("field").asText();
+            Map<String, Long> counts = new HashMap<>();
+            for (Map.Entry<String, Double> match : matches) {
+                JsonNode value = docs.get(match.getKey()).get(field);
+                if (value != null) {
+                    counts.merge(value.asText(), 1L, Long::sum);
+                }
+            }
+            ObjectNode body = result.putObject("sterms#" + aggregation.getKey());
+            body.put("doc_count_error_upper_bound", 0);
+            body.put("sum_other_doc_count", 0);
+            ArrayNode buckets = body.putArray("buckets");
+            counts.entrySet().stream()
+                    .filter(e -> e.getValue() >= terms.path("min_doc_count").asLong(1))
+                    .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
+                    .limit(terms.path("size").asInt(10))
+                    .forEach(e -> buckets.addObject().put("key", e.getKey()).put("doc_count", e.getValue()));
+        });
+        return result;
+    }
+
+    private ObjectNode reindex(JsonNode request) {
+        JsonNode sourceIndex = request.path("source").path("index");
+        Map<String, JsonNode> source = visible(sourceIndex.isArray() ? sourceIndex.path(0).asText() : sourceIndex.asText());
+        String tenantId = termTenant(request.path("source").path("query"));
+        Map<String, JsonNode> dest = indices.computeIfAbsent(
+                resolve(request.path("dest").path("index").asText()), k -> new ConcurrentHashMap<>());
+        long copied = 0;
+        if (source != null) {
+            for (Map.Entry<String, JsonNode> doc : source.entrySet()) {
+                if (tenantId == null || tenantId.equals(doc.getValue().path("tenant_id").asText())) {
+                    dest.put(doc.getKey(), doc.getValue());
+                    copied++;
+                }
+            }
+        }
+        return completeTask("indices:data/write/reindex", copied, 0);
+    }
+
+    private ObjectNode deleteByQuery(String index, JsonNode request) {
+        Map<String, JsonNode> docs = indices.get(resolve(index));
+        String tenantId = termTenant(request.path("query"));
+        long deleted = 0;
+        if (docs != null) {
+            int before = docs.size();
+            docs.values().removeIf(doc -> tenantId == null || tenantId.equals(doc.path("tenant_id").asText()));
+            deleted = before - docs.size();
+        }
+        return completeTask("indices:data/write/delete/byquery", 0, deleted);
+    }
+
+    private static String termTenant(JsonNode query) {
+        JsonNode tenant = query.path("term").path("tenant_id");
+        return tenant.isObject() ? tenant.path("value").asText() : tenant.textValue();
+    }
+
+    /**
+     * Record a finished background task and answer as wait_for_completion=false does
+     */
+    private ObjectNode completeTask(String action, long created, long deleted) {
+        String taskId = "fake-node:" + seqNo.getAndIncrement();
+        ObjectNode task = MAPPER.createObjectNode();
+        task.put("completed", true);
+        ObjectNode info = task.putObject("task");
+        info.put("node", "fake-node");
+        info.put("id", Long.parseLong(taskId.substring(taskId.indexOf(':') + 1)));
+        info.put("type", "transport");
+        info.put("action", action);
+        info.put("start_time_in_millis", System.currentTimeMillis());
+        info.put("running_time_in_nanos", 0);
+        info.put("cancellable", true);
+        info.putObject("headers");
+        ObjectNode response = task.putObject("response");
+        response.put("took", 0);
+        response.put("total", created + deleted);
+        response.put("created", created);
+        response.put("deleted", deleted);
+        response.put("version_conflicts", 0);
+        response.putArray("failures");
+        completedTasks.put(taskId, task);
+
+        ObjectNode body = MAPPER.createObjectNode();
+        body.put("task", taskId);
+        return body;
+    }
+
+    /**
+     * Document count and an approximate store size from the JSON length
+     */
+    private ObjectNode stats(String name) {
+        List<String> names = name.endsWith("*") ? matchingIndices(name) : List.of(resolve(name));
+        long docs = 0;
+        long bytes = 0;
+        for (String index : names) {
+            Map<String, JsonNode> indexDocs = indices.getOrDefault(index, Map.of());
+            docs += indexDocs.size();
+            for (JsonNode doc : indexDocs.values()) {
+                bytes += doc.toString().length();
+            }
+        }
+        ObjectNode body = MAPPER.createObjectNode();
+        body.set("_shards", shards());
+        ObjectNode all = body.putObject("_all");
+        for (String group : List.of("primaries", "total")) {
+            ObjectNode stats = all.putObject(group);
+            stats.putObject("docs").put("count", docs).put("deleted", 0);
+            stats.putObject("store").put("size_in_bytes", bytes).put("reserved_in_bytes", 0);
+        }
+        body.putObject("indices");
+        return body;
+    }
+
+    private static ObjectNode indexNotFound(String index) {
+        return error("index_not_found_exception", "no such index [" + index + "]", 404);
+    }
+
+    private static ObjectNode error(String type, String reason, int status) {
+        ObjectNode body = MAPPER.createObjectNode();
+        ObjectNode error = body.putObject("error");
+        ObjectNode rootCause = error.putArray("root_cause").addObject();
+        rootCause.put("type", type);
+        rootCause.put("reason", reason);
+        error.put("type", type);
+        error.put("reason", reason);
+        body.put("status", status);
+        return body;
+    }
+
+    private void simulateLatency() {
+        long delay = latencyMicros + (jitterMicros > 0 ? ThreadLocalRandom.current().nextLong(jitterMicros) : 0);
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay / 1000, (int) (delay % 1000) * 1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static InputStream requestBody(HttpExchange exchange) throws IOException {
+        String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+        InputStream body = exchange.getRequestBody();
+        return "gzip".equalsIgnoreCase(encoding) ? new GZIPInputStream(body) : body;
+    }
+
+    private static JsonNode readJson(InputStream body) throws IOException {
+        byte[] bytes = body.readAllBytes();
+        return bytes.length == 0 ? MAPPER.createObjectNode() : MAPPER.readTree(bytes);
+    }
+
+    private static void respond(HttpExchange exchange, int status, JsonNode body) throws IOException {
+        // The Java client refuses responses without this header
+        exchange.getResponseHeaders().set("X-Elastic-Product", "Elasticsearch");
+        if (body == null || exchange.getRequestMethod().equals("HEAD")) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] bytes = MAPPER.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Index an alias points at and the tenant_id its filter selects, if any
+     */
+    private record Alias(String index, String tenantId) {
+    }
+}
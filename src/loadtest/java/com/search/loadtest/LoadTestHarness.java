@@ -0,0 +1,256 @@
+package com.search.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.search.DistributedSearchElasticsearchApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * End-to-end load test against an in-process fake Elasticsearch
+ *
+ * Starts the fake cluster and the Spring Boot app, then offers an open-model
+ * mix of /search, /documents and /documents/batch requests at increasing
+ * rates and reports latency percentiles per stage and the highest rate that
+ * stayed within the p99 and error-rate limits with every lower stage passing.
+ *
+ * Harness options (everything else is passed to the application, e.g.
+ * --search.execution.async=true):
+ *   --rps=200,400,800,1600   offered rates, one stage each
+ *   --duration=10            seconds per stage
+ *   --es-latency-us=1000     fake cluster latency per request
+ *   --es-jitter-us=500       random extra latency
+ *   --es-error-rate=0.0      probability of an injected 429
+ *   --mix=search:80,index:15,batch:5
+ *   --batch-size=100
+ *   --slo-p99-ms=100         p99 limit for a stage to count as sustained
+ *   --max-error-rate=0.01
+ *   --compare-execution      run every stage with search.execution.async=false,
+ *                            then again with true, and print both side by side
+ */
+public class LoadTestHarness {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String[] WORDS = {
+        "distributed", "search", "elasticsearch", "tenant", "index", "shard",
+        "replica", "cluster", "query", "document", "latency", "throughput"
+    };
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put("rps", "200,400,800,1600");
+        options.put("duration", "10");
+        options.put("es-latency-us", "1000");
+        options.put("es-jitter-us", "500");
+        options.put("es-error-rate", "0.0");
+        options.put("mix", "search:80,index:15,batch:5");
+        options.put("batch-size", "100");
+        options.put("slo-p99-ms", "100");
+        options.put("max-error-rate", "0.01");
+        options.put("compare-execution", "false");
+
+        List<String> appArgs = new ArrayList<>();
+        for (String arg : args) {
+            String[] kv = arg.replaceFirst("^--", "").split("=", 2);
+            if (options.containsKey(kv[0])) {
+                options.put(kv[0], kv.length > 1 ? kv[1] : "true");
+            } else {
+                appArgs.add(arg);
+            }
+        }
+
+        try (FakeElasticsearchServer elasticsearch = new FakeElasticsearchServer(
+                Long.parseLong(options.get("es-latency-us")),
+                Long.parseLong(options.get("es-jitter-us")),
+                Double.parseDouble(options.get("es-error-rate"))).start()) {
+
+            if (!Boolean.parseBoolean(options.get("compare-execution"))) {
+                runApplication(elasticsearch, appArgs, options);
+                return;
+            }
+
+            // Same fake cluster and offered load; only the execution mode differs
+            Map<Boolean, RunResult> results = new LinkedHashMap<>();
+            for (boolean async : new boolean[] {false, true}) {
+                System.out.printf("%n=== search.execution.async=%s ===%n", async);
+                List<String> modeArgs = new ArrayList<>(appArgs);
+                modeArgs.removeIf(arg -> arg.startsWith("--search.execution.async"));
+                modeArgs.add("--search.execution.async=" + async);
+                results.put(async, runApplication(elasticsearch, modeArgs, options));
+            }
+            printComparison(results.get(false), results.get(true));
+        }
+    }
+
+    private static RunResult runApplication(FakeElasticsearchServer elasticsearch, List<String> appArgs,
+                                            Map<String, String> options) throws Exception {
+        List<String> springArgs = new ArrayList<>(List.of(
+            "--server.port=0",
+            "--elasticsearch.host=127.0.0.1",
+            "--elasticsearch.port=" + elasticsearch.port(),
+            "--rate-limit.defaults.permits-per-second=1000000000",
+            "--rate-limit.defaults.burst=1000000000",
+            "--rate-limit.operations.batch.permits-per-second=1000000000",
+            "--rate-limit.operations.batch.burst=1000000000",
+            "--logging.level.com.search=WARN"
+        ));
+        springArgs.addAll(appArgs);
+
+        ConfigurableApplicationContext context = SpringApplication.run(
+            DistributedSearchElasticsearchApplication.class, springArgs.toArray(new String[0]));
+        try {
+            int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+            return run(URI.create("http://127.0.0.1:" + port), options);
+        } finally {
+            context.close();
+        }
+    }
+
+    private static RunResult run(URI baseUri, Map<String, String> options) throws Exception {
+        HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+        String token = MAPPER.readTree(httpClient.send(
+            HttpRequest.newBuilder(baseUri.resolve("/api/auth/token"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"tenantId\":\"loadtest\"}"))
+                .build(),
+            HttpResponse.BodyHandlers.ofString()).body()).get("token").asText();
+
+        int batchSize = Integer.parseInt(options.get("batch-size"));
+        Supplier<HttpRequest.Builder> requests = requestMix(baseUri, token, options.get("mix"), batchSize);
+
+        // Seed the index so searches have something to match
+        for (int i = 0; i < 10; i++) {
+            httpClient.send(batchRequest(baseUri, token, batchSize).build(), HttpResponse.BodyHandlers.discarding());
+        }
+
+        OpenModelLoadGenerator generator = new OpenModelLoadGenerator(httpClient, Duration.ofSeconds(30));
+        Duration stageDuration = Duration.ofSeconds(Long.parseLong(options.get("duration")));
+        double sloP99Ms = Double.parseDouble(options.get("slo-p99-ms"));
+        double maxErrorRate = Double.parseDouble(options.get("max-error-rate"));
+
+        // Short warm-up so JIT compilation doesn't land in the first stage
+        generator.run(100, Duration.ofSeconds(5), requests);
+
+        System.out.printf("%n%10s %12s %10s %10s %10s %10s %10s %8s%n",
+            "targetRps", "achievedRps", "p50 ms", "p99 ms", "p999 ms", "max ms", "errors", "ok");
+        int maxSustainedRps = 0;
+        boolean failedBefore = false;
+        List<OpenModelLoadGenerator.StageResult> stages = new ArrayList<>();
+        for (String rps : options.get("rps").split(",")) {
+            OpenModelLoadGenerator.StageResult result =
+                generator.run(Integer.parseInt(rps.trim()), stageDuration, requests);
+            stages.add(result);
+
+            boolean sustained = result.percentileMs(99.0) <= sloP99Ms
+                && result.errorRate() <= maxErrorRate
+                && result.achievedRps() >= result.targetRps() * 0.95;
+            // A pass after a failed stage is noise around saturation, not headroom
+            if (sustained && !failedBefore) {
+                maxSustainedRps = result.targetRps();
+            }
+            failedBefore |= !sustained;
+
+            System.out.printf("%10d %12.1f %10.2f %10.2f %10.2f %10.2f %10d %8s%n",
+                result.targetRps(), result.achievedRps(),
+                result.percentileMs(50.0), result.percentileMs(99.0), result.percentileMs(99.9),
+                result.maxMs(), result.errors(), sustained ? "yes" : "no");
+        }
+        System.out.printf("%nMax sustained RPS (p99 <= %.0f ms, errors <= %.1f%%): %d%n",
+            sloP99Ms, maxErrorRate * 100, maxSustainedRps);
+        return new RunResult(stages, maxSustainedRps);
+    }
+
+    private static void printComparison(RunResult blocking, RunResult async) {
+        System.out.printf("%n=== Blocking vs async execution ===%n");
+        System.out.printf("%10s %14s %14s %14s %14s %12s %12s%n",
+            "targetRps", "blocking rps", "async rps", "blocking p99", "async p99", "blocking err", "async err");
+        for (int i = 0; i < blocking.stages().size(); i++) {
+            OpenModelLoadGenerator.StageResult b = blocking.stages().get(i);
+            OpenModelLoadGenerator.StageResult a = async.stages().get(i);
+            System.out.printf("%10d %14.1f %14.1f %14.2f %14.2f %12d %12d%n",
+                b.targetRps(), b.achievedRps(), a.achievedRps(),
+                b.percentileMs(99.0), a.percentileMs(99.0), b.errors(), a.errors());
+        }
+        System.out.printf("%nMax sustained RPS: blocking %d, async %d%n",
+            blocking.maxSustainedRps(), async.maxSustainedRps());
+    }
+
+    private record RunResult(List<OpenModelLoadGenerator.StageResult> stages, int maxSustainedRps) {
+    }
+
+    private static Supplier<HttpRequest.Builder> requestMix(URI baseUri, String token, String mix, int batchSize) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] kv = entry.split(":");
+            weights.put(kv[0].trim(), Integer.parseInt(kv[1].trim()));
+        }
+        int totalWeight = weights.values().stream().mapToInt(Integer::intValue).sum();
+        AtomicLong docIds = new AtomicLong();
+
+        return () -> {
+            int pick = ThreadLocalRandom.current().nextInt(totalWeight);
+            for (Map.Entry<String, Integer> weight : weights.entrySet()) {
+                pick -= weight.getValue();
+                if (pick < 0) {
+                    return switch (weight.getKey()) {
+                        case "search" -> HttpRequest.newBuilder(baseUri.resolve("/search?q=" + randomWords(2).replace(' ', '+')))
+                            .header("Authorization", "Bearer " + token)
+                            .GET();
+                        case "index" -> HttpRequest.newBuilder(baseUri.resolve("/documents"))
+                            .header("Authorization", "Bearer " + token)
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString(
+                                "{\"docId\":\"doc-" + docIds.incrementAndGet() + "\",\"content\":\"" + randomWords(40) + "\"}"));
+                        case "batch" -> batchRequest(baseUri, token, batchSize);
+                        default -> throw new IllegalArgumentException("Unknown request type: " + weight.getKey());
+                    };
+                }
+            }
+            throw new IllegalStateException("Request mix weights are empty");
+        };
+    }
+
+    private static HttpRequest.Builder batchRequest(URI baseUri, String token, int batchSize) {
+        StringBuilder body = new StringBuilder("{\"documents\":[");
+        for (int i = 0; i < batchSize; i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            body.append("{\"content\":\"").append(randomWords(40)).append("\"}");
+        }
+        body.append("]}");
+        return HttpRequest.newBuilder(baseUri.resolve("/documents/batch"))
+            .header("Authorization", "Bearer " + token)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(body.toString()));
+    }
+
+    private static String randomWords(int count) {
+        StringBuilder words = new StringBuilder();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                words.append(' ');
+            }
+            words.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return words.toString();
+    }
+}
@@ -0,0 +1,88 @@
+package com.search.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Open-model load generator
+ *
+ * Requests are issued on a fixed schedule regardless of how fast earlier
+ * ones complete, and latency is measured from each request's intended start
+ * time, so a stalled server shows up in the percentiles instead of silently
+ * lowering the offered load (coordinated omission).
+ */
+public class OpenModelLoadGenerator {
+
+    private final HttpClient httpClient;
+    private final Duration requestTimeout;
+
+    public OpenModelLoadGenerator(HttpClient httpClient, Duration requestTimeout) {
+        this.httpClient = httpClient;
+        this.requestTimeout = requestTimeout;
+    }
+
+    /**
+     * Offer requests at a constant rate for the given duration and wait for all of them
+     */
+    public StageResult run(int targetRps, Duration duration, Supplier<HttpRequest.Builder> requests) {
+        Histogram latencies = new ConcurrentHistogram(TimeUnit.SECONDS.toMicros(60), 3);
+        AtomicLong errors = new AtomicLong();
+        List<CompletableFuture<?>> inFlight = new ArrayList<>();
+
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / targetRps;
+        long totalRequests = (long) targetRps * duration.toSeconds();
+        long start = System.nanoTime();
+
+        for (long i = 0; i < totalRequests; i++) {
+            long intended = start + i * intervalNanos;
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            HttpRequest request = requests.get().timeout(requestTimeout).build();
+            inFlight.add(httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> {
+                    long latencyMicros = (System.nanoTime() - intended) / 1000;
+                    latencies.recordValue(Math.min(latencyMicros, latencies.getHighestTrackableValue()));
+                    if (error != null || response.statusCode() >= 300) {
+                        errors.incrementAndGet();
+                    }
+                }));
+        }
+
+        CompletableFuture.allOf(inFlight.toArray(new CompletableFuture[0]))
+            .exceptionally(e -> null)
+            .join();
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        return new StageResult(targetRps, totalRequests / elapsedSeconds, totalRequests, errors.get(), latencies);
+    }
+
+    public record StageResult(int targetRps, double achievedRps, long requests, long errors, Histogram latencies) {
+
+        public double errorRate() {
+            return requests == 0 ? 0 : (double) errors / requests;
+        }
+
+        public double percentileMs(double percentile) {
+            return latencies.getValueAtPercentile(percentile) / 1000.0;
+        }
+
+        public double maxMs() {
+            return latencies.getMaxValue() / 1000.0;
+        }
+    }
+}
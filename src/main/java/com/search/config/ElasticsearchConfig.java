@@ -1,7 +1,9 @@
 package com.search.config;
 
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
 import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.transport.ElasticsearchTransport;
 import co.elastic.clients.transport.rest_client.RestClientTransport;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
@@ -12,13 +14,32 @@ import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.elasticsearch.client.NodeSelector;
 import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestClientBuilder;
+import org.elasticsearch.client.sniff.ElasticsearchNodesSniffer;
+import org.elasticsearch.client.sniff.SniffOnFailureListener;
+import org.elasticsearch.client.sniff.Sniffer;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+
 /**
  * Elasticsearch configuration for distributed search service
+ *
+ * - Requests are spread round-robin over elasticsearch.hosts, or over the
+ *   nodes the sniffer discovers when sniffing is enabled
+ * - Dedicated master nodes never receive client traffic
+ * - Pool limits replace the low-level client's defaults of 10 per node and
+ *   30 in total, which queue requests under bursts
  */
 
 @Slf4j
@@ -31,6 +52,9 @@ public class ElasticsearchConfig {
     @Value("${elasticsearch.port:9200}")
     private int elasticsearchPort;
     
+    @Value("${elasticsearch.hosts:}")
+    private List<String> elasticsearchHosts;
+    
     @Value("${elasticsearch.scheme:http}")
     private String elasticsearchScheme;
     
@@ -40,13 +64,67 @@ public class ElasticsearchConfig {
     @Value("${elasticsearch.password:}")
     private String elasticsearchPassword;
     
+    @Value("${elasticsearch.compression:false}")
+    private boolean compression;
+    
+    @Value("${elasticsearch.pool.max-connections-total:100}")
+    private int maxConnectionsTotal;
+    
+    @Value("${elasticsearch.pool.max-connections-per-route:30}")
+    private int maxConnectionsPerRoute;
+    
+    @Value("${elasticsearch.pool.keep-alive:5m}")
+    private Duration keepAlive;
+    
+    @Value("${elasticsearch.sniff.enabled:false}")
+    private boolean sniffEnabled;
+    
+    // Registered with the client before the sniffer exists; the sniffer bean attaches itself
+    private final SniffOnFailureListener sniffOnFailureListener = new SniffOnFailureListener();
+    
+    /**
+     * Low-level REST client shared by the transport and the sniffer
+     */
     @Bean
-    public ElasticsearchClient elasticsearchClient() {
-        log.info("Initializing Elasticsearch client: {}://{}:{}", 
-                elasticsearchScheme, elasticsearchHost, elasticsearchPort);
+    public RestClient restClient() {
+        HttpHost[] hosts = hosts();
+        log.info("Initializing Elasticsearch client: {} (sniffing {}, compression {})",
+                List.of(hosts), sniffEnabled ? "on" : "off", compression ? "on" : "off");
         
-        // Create the low-level REST client
-        RestClient restClient;
+        RestClientBuilder builder = RestClient.builder(hosts)
+            .setNodeSelector(NodeSelector.SKIP_DEDICATED_MASTERS)
+            .setCompressionEnabled(compression)
+            .setHttpClientConfigCallback(this::configureHttpClient);
+        if (sniffEnabled) {
+            builder.setFailureListener(sniffOnFailureListener);
+        }
+        return builder.build();
+    }
+    
+    private HttpHost[] hosts() {
+        List<String> configured = elasticsearchHosts.stream()
+            .map(String::trim)
+            .filter(host -> !host.isEmpty())
+            .toList();
+        if (configured.isEmpty()) {
+            return new HttpHost[] { new HttpHost(elasticsearchHost, elasticsearchPort, elasticsearchScheme) };
+        }
+        return configured.stream()
+            .map(host -> HttpHost.create(host.contains("://") ? host : elasticsearchScheme + "://" + host))
+            .toArray(HttpHost[]::new);
+    }
+    
+    private HttpAsyncClientBuilder configureHttpClient(HttpAsyncClientBuilder httpClientBuilder) {
+        httpClientBuilder
+            .setMaxConnTotal(maxConnectionsTotal)
+            .setMaxConnPerRoute(maxConnectionsPerRoute)
+            .setDefaultIOReactorConfig(IOReactorConfig.custom().setSoKeepAlive(true).build())
+            // Retire idle connections before a load balancer or firewall drops them silently
+            .setKeepAliveStrategy((response, context) -> {
+                long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE
+                    .getKeepAliveDuration(response, context);
+                return serverKeepAlive > 0 ? Math.min(serverKeepAlive, keepAlive.toMillis()) : keepAlive.toMillis();
+            });
         
         if (elasticsearchUsername != null && !elasticsearchUsername.isEmpty()) {
             // Configure authentication if credentials provided
@@ -55,30 +133,57 @@ public class ElasticsearchConfig {
                 AuthScope.ANY,
                 new UsernamePasswordCredentials(elasticsearchUsername, elasticsearchPassword)
             );
-            
-            restClient = RestClient.builder(
-                    new HttpHost(elasticsearchHost, elasticsearchPort, elasticsearchScheme))
-                .setHttpClientConfigCallback(httpClientBuilder -> 
-                    httpClientBuilder.setDefaultCredentialsProvider(credentialsProvider))
-                .build();
-        } else {
-            // No authentication
-            restClient = RestClient.builder(
-                    new HttpHost(elasticsearchHost, elasticsearchPort, elasticsearchScheme))
-                .build();
+            httpClientBuilder.setDefaultCredentialsProvider(credentialsProvider);
         }
-        
+        return httpClientBuilder;
+    }
+    
+    /**
+     * Periodically replaces the client's node list with the cluster's HTTP-enabled nodes,
+     * and right away after a node fails
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "elasticsearch.sniff.enabled", havingValue = "true")
+    public Sniffer sniffer(
+            RestClient restClient,
+            @Value("${elasticsearch.sniff.interval:5m}") Duration interval,
+            @Value("${elasticsearch.sniff.after-failure-delay:1m}") Duration afterFailureDelay) {
+        ElasticsearchNodesSniffer nodesSniffer = new ElasticsearchNodesSniffer(restClient,
+                ElasticsearchNodesSniffer.DEFAULT_SNIFF_REQUEST_TIMEOUT,
+                ElasticsearchNodesSniffer.Scheme.valueOf(elasticsearchScheme.toUpperCase(Locale.ROOT)));
+        Sniffer sniffer = Sniffer.builder(restClient)
+            .setSniffIntervalMillis((int) interval.toMillis())
+            .setSniffAfterFailureDelayMillis((int) afterFailureDelay.toMillis())
+            .setNodesSniffer(nodesSniffer)
+            .build();
+        sniffOnFailureListener.setSniffer(sniffer);
+        return sniffer;
+    }
+    
+    @Bean(destroyMethod = "close")
+    public ElasticsearchTransport elasticsearchTransport(RestClient restClient) {
         // Create the transport with a Jackson mapper
         ObjectMapper objectMapper = new ObjectMapper();
         objectMapper.registerModule(new JavaTimeModule());
         objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-        RestClientTransport transport = new RestClientTransport(
-            restClient, new JacksonJsonpMapper(objectMapper));
-        
-        // Create the API client
+        return new RestClientTransport(restClient, new JacksonJsonpMapper(objectMapper));
+    }
+    
+    /**
+     * Blocking API client
+     */
+    @Bean
+    public ElasticsearchClient elasticsearchClient(ElasticsearchTransport transport) {
         ElasticsearchClient client = new ElasticsearchClient(transport);
-        
         log.info("Elasticsearch client initialized successfully");
         return client;
     }
+    
+    /**
+     * Non-blocking API client sharing the same transport and connection pool
+     */
+    @Bean
+    public ElasticsearchAsyncClient elasticsearchAsyncClient(ElasticsearchTransport transport) {
+        return new ElasticsearchAsyncClient(transport);
+    }
 }
@@ -0,0 +1,97 @@
+package com.search.controller;
+
+import com.search.service.ImportJobService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Bulk import jobs for the caller's tenant
+ *
+ * POST /admin/import starts a job, each POST /admin/import/{jobId}/documents
+ * streams a part of the NDJSON data, and POST /admin/import/{jobId}/finish
+ * restores the index. POST /admin/import/{jobId}/abort restores it without
+ * finishing. GET /admin/import/{jobId} reports progress.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/admin/import")
+@RequiredArgsConstructor
+public class ImportJobController {
+    
+    private final ImportJobService importJobService;
+    
+    @PostMapping
+    public ResponseEntity<?> start(@RequestAttribute("tenantId") String tenantId) throws IOException {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(importJobService.start(tenantId));
+        } catch (ImportJobService.ImportConflictException e) {
+            return conflict(e);
+        }
+    }
+    
+    @PostMapping("/{jobId}/documents")
+    public ResponseEntity<?> load(
+            @PathVariable String jobId,
+            HttpServletRequest request,
+            @RequestAttribute("tenantId") String tenantId) throws IOException {
+        try {
+            return ResponseEntity.ok(importJobService.load(tenantId, jobId, request.getInputStream()));
+        } catch (ImportJobService.ImportJobNotFoundException e) {
+            return notFound(e);
+        } catch (ImportJobService.ImportConflictException e) {
+            return conflict(e);
+        }
+    }
+    
+    @PostMapping("/{jobId}/finish")
+    public ResponseEntity<?> finish(
+            @PathVariable String jobId,
+            @RequestAttribute("tenantId") String tenantId) throws IOException {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(importJobService.finish(tenantId, jobId));
+        } catch (ImportJobService.ImportJobNotFoundException e) {
+            return notFound(e);
+        } catch (ImportJobService.ImportConflictException e) {
+            return conflict(e);
+        }
+    }
+    
+    @PostMapping("/{jobId}/abort")
+    public ResponseEntity<?> abort(
+            @PathVariable String jobId,
+            @RequestAttribute("tenantId") String tenantId) throws IOException {
+        try {
+            return ResponseEntity.ok(importJobService.abort(tenantId, jobId));
+        } catch (ImportJobService.ImportJobNotFoundException e) {
+            return notFound(e);
+        } catch (ImportJobService.ImportConflictException e) {
+            return conflict(e);
+        }
+    }
+    
+    @GetMapping("/{jobId}")
+    public ResponseEntity<?> get(
+            @PathVariable String jobId,
+            @RequestAttribute("tenantId") String tenantId) throws IOException {
+        try {
+            return ResponseEntity.ok(importJobService.get(tenantId, jobId));
+        } catch (ImportJobService.ImportJobNotFoundException e) {
+            return notFound(e);
+        }
+    }
+    
+    private static ResponseEntity<?> notFound(RuntimeException e) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+    }
+    
+    private static ResponseEntity<?> conflict(RuntimeException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+    }
+}
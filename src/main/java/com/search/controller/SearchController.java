@@ -1,19 +1,37 @@
 package com.search.controller;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.search.model.FacetRequest;
 import com.search.model.SearchDocument;
+import com.search.model.SearchFilters;
 import com.search.model.SearchResult;
+import com.search.service.DocumentDeletionService;
+import com.search.service.DocumentExportService;
 import com.search.service.ElasticsearchSearchService;
+import com.search.service.SearchCursorCodec;
+import com.search.service.StreamingIngestService;
 import com.search.security.JwtUtil;
+import com.search.security.TenantRateLimiter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
 import java.util.stream.Collectors;
 
 /**
@@ -25,8 +43,26 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class SearchController {
     
+    private static final String BACKEND = "elasticsearch";
+    
     private final ElasticsearchSearchService searchService;
+    private final StreamingIngestService streamingIngestService;
+    private final DocumentExportService documentExportService;
+    private final DocumentDeletionService documentDeletionService;
     private final JwtUtil jwtUtil;
+    private final TenantRateLimiter rateLimiter;
+    
+    /**
+     * Serve search, get and single-document writes on the async client
+     * instead of holding a servlet thread for the whole cluster call
+     *
+     * Those handlers are declared to return Object: a CompletableFuture in
+     * async mode, otherwise a plain ResponseEntity, so blocking requests
+     * don't pay for an async dispatch. Spring picks the return value
+     * handler from the runtime type.
+     */
+    @Value("${search.execution.async:false}")
+    private boolean asyncExecution;
     
     /**
      * Health check endpoint
@@ -65,7 +101,7 @@ public class SearchController {
      * Index a single document
      */
     @PostMapping("/documents")
-    public ResponseEntity<Map<String, Object>> indexDocument(
+    public Object indexDocument(
             @RequestBody Map<String, Object> request,
             @RequestAttribute("tenantId") String tenantId) {
         
@@ -89,23 +125,37 @@ public class SearchController {
                 .metadata(metadata)
                 .build();
         
+        if (asyncExecution) {
+            return searchService.indexDocumentAsync(document)
+                    .thenApply(id -> indexedResponse(id, tenantId))
+                    .exceptionally(e -> indexFailedResponse(e.getCause() != null ? e.getCause() : e));
+        }
+        
         try {
             String id = searchService.indexDocument(document);
-            
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("docId", id);
-            response.put("tenantId", tenantId);
-            response.put("indexName", SearchDocument.getIndexName(tenantId));
-            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+            return indexedResponse(id, tenantId);
             
         } catch (Exception e) {
-            log.error("Error indexing document", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(Map.of("error", "Failed to index document: " + e.getMessage()));
+            return indexFailedResponse(e);
         }
     }
     
+    private ResponseEntity<Map<String, Object>> indexedResponse(String id, String tenantId) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("docId", id);
+        response.put("tenantId", tenantId);
+        response.put("indexName", searchService.indexName(tenantId));
+        response.put("consistencyToken", searchService.consistencyToken(tenantId));
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+    
+    private ResponseEntity<Map<String, Object>> indexFailedResponse(Throwable e) {
+        log.error("Error indexing document", e);
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("error", "Failed to index document: " + e.getMessage()));
+    }
+    
     /**
      * Index multiple documents in batch
      */
@@ -142,6 +192,20 @@ public class SearchController {
                 })
                 .collect(Collectors.toList());
         
+        // One permit per document rather than per request
+        TenantRateLimiter.Decision decision = 
+            rateLimiter.tryAcquire(tenantId, TenantRateLimiter.Operation.BATCH, documents.size());
+        if (decision.isTooLarge()) {
+            return tooLarge(tenantId, TenantRateLimiter.Operation.BATCH, "documents", decision);
+        }
+        if (!decision.isAllowed()) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(TenantRateLimiter.LIMIT_HEADER, String.valueOf(decision.getLimit()))
+                    .header(TenantRateLimiter.REMAINING_HEADER, String.valueOf(decision.getRemaining()))
+                    .header(TenantRateLimiter.RETRY_AFTER_HEADER, String.valueOf(decision.getRetryAfterSeconds()))
+                    .body(Map.of("error", "Rate limit exceeded", "tenantId", tenantId));
+        }
+        
         ElasticsearchSearchService.BulkIndexResult result = 
             searchService.indexDocumentsBatch(documents);
         
@@ -151,15 +215,120 @@ public class SearchController {
         response.put("failed", result.getFailureCount());
         response.put("total", documentsData.size());
         response.put("indexingTimeMs", result.getTimeMs());
+        response.put("errors", result.getErrors());
+        response.put("consistencyToken", searchService.consistencyToken(tenantId));
+        
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .header(TenantRateLimiter.LIMIT_HEADER, String.valueOf(decision.getLimit()))
+                .header(TenantRateLimiter.REMAINING_HEADER, String.valueOf(decision.getRemaining()))
+                .body(response);
+    }
+    
+    /**
+     * A request the tenant's burst can never cover; a 429 would have the client retry it forever
+     *
+     * @param units what the operation is charged per, e.g. "documents"
+     */
+    private ResponseEntity<Map<String, Object>> tooLarge(String tenantId, TenantRateLimiter.Operation operation,
+                                                         String units, TenantRateLimiter.Decision decision) {
+        long maxUnits = rateLimiter.maxUnits(tenantId, operation);
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                .header(TenantRateLimiter.LIMIT_HEADER, String.valueOf(decision.getLimit()))
+                .body(Map.of("error", "Request exceeds the rate limit burst; send at most "
+                        + maxUnits + " " + units + " per request", "tenantId", tenantId));
+    }
+    
+    /**
+     * Index documents streamed as NDJSON, one document per line
+     *
+     * Documents are charged per chunk against the same quota as batches;
+     * while the tenant is over it, reading the body pauses.
+     */
+    @PostMapping("/documents/stream")
+    public ResponseEntity<Map<String, Object>> indexDocumentsStream(
+            HttpServletRequest request,
+            @RequestAttribute("tenantId") String tenantId) throws IOException {
+        
+        StreamingIngestService.StreamIngestResult result = 
+            streamingIngestService.ingest(tenantId, request.getInputStream(), documents -> {
+                chargeChunk(tenantId, documents.size());
+                return searchService.indexDocumentsBatch(documents);
+            });
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", result.getParseError() == null);
+        response.put("indexed", result.getIndexed());
+        response.put("failed", result.getFailed());
+        response.put("skipped", result.getSkipped());
+        response.put("total", result.getIndexed() + result.getFailed() + result.getSkipped());
+        response.put("chunks", result.getChunks());
+        response.put("indexingTimeMs", result.getTimeMs());
+        response.put("consistencyToken", searchService.consistencyToken(tenantId));
+        if (result.getParseError() != null) {
+            response.put("error", "Malformed NDJSON: " + result.getParseError());
+        }
         
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
     
+    /**
+     * Wait for the tenant's batch quota to cover a streamed chunk
+     *
+     * @throws IllegalStateException if the chunk exceeds the burst or the wait was interrupted;
+     *                               the chunk is then counted as failed
+     */
+    private void chargeChunk(String tenantId, int documents) {
+        try {
+            TenantRateLimiter.Decision decision = 
+                rateLimiter.acquire(tenantId, TenantRateLimiter.Operation.BATCH, documents);
+            if (decision.isTooLarge()) {
+                throw new IllegalStateException("Chunk of " + documents + " documents exceeds the rate limit burst");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for rate limit", e);
+        }
+    }
+    
+    /**
+     * Export all of the tenant's documents as NDJSON, optionally gzip-compressed
+     *
+     * Written on the request thread straight to the response, so a slow
+     * client slows the export down instead of buffering it.
+     */
+    @GetMapping("/documents/export")
+    public void exportDocuments(
+            @RequestParam(name = "gzip", defaultValue = "false") boolean gzip,
+            @RequestAttribute("tenantId") String tenantId,
+            HttpServletResponse response) throws IOException {
+        
+        if (!documentExportService.hasDocuments(tenantId)) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            response.setContentType("application/json");
+            response.getWriter().write("{\"error\":\"No documents for tenant\"}");
+            return;
+        }
+        
+        response.setContentType("application/x-ndjson");
+        response.setHeader("Content-Disposition",
+                "attachment; filename=\"" + searchService.indexName(tenantId) + ".ndjson\"");
+        
+        if (gzip) {
+            response.setHeader("Content-Encoding", "gzip");
+        }
+        // Sync flush so every page reaches the client as it is written
+        try (OutputStream out = gzip
+                ? new GZIPOutputStream(response.getOutputStream(), 64 * 1024, true)
+                : response.getOutputStream()) {
+            documentExportService.export(tenantId, out);
+        }
+    }
+    
     /**
      * Search for documents
      */
     @PostMapping("/search")
-    public ResponseEntity<Map<String, Object>> search(
+    public Object search(
             @RequestBody Map<String, Object> request,
             @RequestAttribute("tenantId") String tenantId) {
         
@@ -173,48 +342,30 @@ public class SearchController {
             ? ((Number) request.get("topK")).intValue() 
             : 10;
         
-        if (topK < 1 || topK > 100) {
-            return ResponseEntity.badRequest()
-                    .body(Map.of("error", "topK must be between 1 and 100"));
-        }
-        
-        ElasticsearchSearchService.SearchResponse searchResponse = 
-                searchService.search(tenantId, query, topK);
-        
-        List<Map<String, Object>> results = searchResponse.getResults().stream()
-                .map(result -> {
-                    Map<String, Object> resultMap = new HashMap<>();
-                    resultMap.put("docId", result.getDocId());
-                    resultMap.put("score", result.getScore());
-                    resultMap.put("snippet", result.getSnippet());
-                    resultMap.put("metadata", result.getMetadata());
-                    return resultMap;
-                })
-                .collect(Collectors.toList());
-        
-        ElasticsearchSearchService.QueryStats stats = searchResponse.getStats();
-        Map<String, Object> statsMap = new HashMap<>();
-        statsMap.put("queryTimeMs", stats.getQueryTimeMs());
-        statsMap.put("docsScanned", stats.getDocsScanned());
-        statsMap.put("shardsQueried", stats.getShardsQueried());
-        statsMap.put("resultsCount", stats.getResultsCount());
-        
-        Map<String, Object> response = new HashMap<>();
-        response.put("results", results);
-        response.put("stats", statsMap);
-        response.put("tenantId", tenantId);
-        response.put("backend", "elasticsearch");
+        @SuppressWarnings("unchecked")
+        List<String> fields = (List<String>) request.get("fields");
+        @SuppressWarnings("unchecked")
+        List<String> facets = (List<String>) request.get("facets");
         
-        return ResponseEntity.ok(response);
+        return executeSearch(tenantId, query, topK, fields, request.get("since"), request.get("until"),
+                request.get("filters"), facets, (Number) request.get("facetSize"),
+                (String) request.get("consistencyToken"));
     }
 
     /**
      * Search for documents
      */
     @GetMapping("/search")
-    public ResponseEntity<Map<String, Object>> search(
+    public Object search(
             @RequestParam(name = "q") String query,
             @RequestParam(name="topK", required = false) Number topKNum,
+            @RequestParam(name = "fields", required = false) List<String> fields,
+            @RequestParam(name = "since", required = false) String since,
+            @RequestParam(name = "until", required = false) String until,
+            @RequestParam(name = "filter", required = false) List<String> filter,
+            @RequestParam(name = "facets", required = false) List<String> facets,
+            @RequestParam(name = "facetSize", required = false) Number facetSize,
+            @RequestParam(name = "consistencyToken", required = false) String consistencyToken,
             @RequestAttribute("tenantId") String tenantId) {
 
         if (query == null || query.isEmpty()) {
@@ -226,51 +377,326 @@ public class SearchController {
                 ? topKNum.intValue()
                 : 10;
 
-        if (topK < 1 || topK > 100) {
+        return executeSearch(tenantId, query, topK, fields, since, until, filter, facets, facetSize,
+                consistencyToken);
+    }
+    
+    /**
+     * @param metadata         metadata filters, see {@link #metadataFilters}
+     * @param facetKeys        metadata keys to count values of, or null
+     * @param consistencyToken token from an earlier write whose effects the results must include, or null
+     * @return a ResponseEntity, or a CompletableFuture of one in async mode
+     */
+    private Object executeSearch(
+            String tenantId, String query, int topK, List<String> requestedFields, Object since, Object until,
+            Object metadata, List<String> facetKeys, Number facetSize, String consistencyToken) {
+        
+        FacetRequest facets;
+        try {
+            facets = facetRequest(facetKeys, facetSize);
+        } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest()
-                    .body(Map.of("error", "topK must be between 1 and 100"));
+                    .body(Map.of("error", e.getMessage()));
         }
-
-        ElasticsearchSearchService.SearchResponse searchResponse =
-                searchService.search(tenantId, query, topK);
-
-        List<Map<String, Object>> results = searchResponse.getResults().stream()
-                .map(result -> {
-                    Map<String, Object> resultMap = new HashMap<>();
-                    resultMap.put("docId", result.getDocId());
-                    resultMap.put("score", result.getScore());
-                    resultMap.put("snippet", result.getSnippet());
-                    resultMap.put("metadata", result.getMetadata());
-                    return resultMap;
-                })
-                .collect(Collectors.toList());
-
-        ElasticsearchSearchService.QueryStats stats = searchResponse.getStats();
-        Map<String, Object> statsMap = new HashMap<>();
-        statsMap.put("queryTimeMs", stats.getQueryTimeMs());
-        statsMap.put("docsScanned", stats.getDocsScanned());
-        statsMap.put("shardsQueried", stats.getShardsQueried());
-        statsMap.put("resultsCount", stats.getResultsCount());
-
-        Map<String, Object> response = new HashMap<>();
-        response.put("results", results);
-        response.put("stats", statsMap);
-        response.put("tenantId", tenantId);
-        response.put("backend", "elasticsearch");
-
-        return ResponseEntity.ok(response);
+        
+        // topK=0 asks for facet counts only
+        if (topK < (facets.isEmpty() ? 1 : 0) || topK > 100) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "topK must be between 1 and 100, or 0 with facets"));
+        }
+        
+        String invalidField = invalidField(requestedFields);
+        if (invalidField != null) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "unsupported field: " + invalidField));
+        }
+        List<String> fields = ElasticsearchSearchService.canonicalFields(requestedFields);
+        
+        SearchFilters filters;
+        try {
+            filters = searchFilters(since, until, metadata);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
+        }
+        
+        if (asyncExecution) {
+            return searchService.awaitConsistency(tenantId, consistencyToken)
+                    .thenCompose(visible -> searchService.searchAsync(tenantId, query, topK, fields, filters, facets))
+                    .thenApply(searchResponse -> ResponseEntity.ok(searchResponseBody(searchResponse, tenantId)));
+        }
+        
+        searchService.awaitConsistency(tenantId, consistencyToken).join();
+        return ResponseEntity.ok(searchResponseBody(
+                searchService.search(tenantId, query, topK, fields, filters, facets), tenantId));
+    }
+    
+    /**
+     * Cursor-paginated search
+     *
+     * The first request carries the query; each response has a cursor for the
+     * next page, or null after the last one. Follow-up requests send only the cursor.
+     */
+    @GetMapping("/search/page")
+    public ResponseEntity<?> searchPage(
+            @RequestParam(name = "q", required = false) String query,
+            @RequestParam(name = "size", required = false) Number sizeNum,
+            @RequestParam(name = "fields", required = false) List<String> requestedFields,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "since", required = false) String since,
+            @RequestParam(name = "until", required = false) String until,
+            @RequestParam(name = "filter", required = false) List<String> filter,
+            @RequestParam(name = "consistencyToken", required = false) String consistencyToken,
+            @RequestAttribute("tenantId") String tenantId) {
+        
+        try {
+            ElasticsearchSearchService.SearchPage page;
+            if (cursor != null && !cursor.isEmpty()) {
+                page = searchService.nextPage(tenantId, cursor);
+            } else {
+                if (query == null || query.isEmpty()) {
+                    return ResponseEntity.badRequest()
+                            .body(Map.of("error", "q or cursor is required"));
+                }
+                int size = sizeNum != null ? sizeNum.intValue() : 10;
+                if (size < 1 || size > 100) {
+                    return ResponseEntity.badRequest()
+                            .body(Map.of("error", "size must be between 1 and 100"));
+                }
+                String invalidField = invalidField(requestedFields);
+                if (invalidField != null) {
+                    return ResponseEntity.badRequest()
+                            .body(Map.of("error", "unsupported field: " + invalidField));
+                }
+                SearchFilters filters;
+                try {
+                    filters = searchFilters(since, until, filter);
+                } catch (IllegalArgumentException e) {
+                    return ResponseEntity.badRequest()
+                            .body(Map.of("error", e.getMessage()));
+                }
+                // Later pages read the same point-in-time, so only the first one waits
+                searchService.awaitConsistency(tenantId, consistencyToken).join();
+                page = searchService.searchPage(tenantId, query, size, 
+                        ElasticsearchSearchService.canonicalFields(requestedFields), filters);
+            }
+            return ResponseEntity.ok(new SearchPageBody(
+                    page.getResults(), page.getStats(), page.getCursor(), tenantId, BACKEND));
+            
+        } catch (SearchCursorCodec.InvalidCursorException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "invalid cursor"));
+        } catch (ElasticsearchSearchService.CursorExpiredException e) {
+            return ResponseEntity.status(HttpStatus.GONE)
+                    .body(Map.of("error", "cursor expired, start a new search"));
+        } catch (RuntimeException e) {
+            log.error("Error fetching search page", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to search: " + e.getMessage()));
+        }
+    }
+    
+    /**
+     * First requested field that can't be returned, or null if all are fine
+     */
+    private static String invalidField(List<String> fields) {
+        if (fields == null) {
+            return null;
+        }
+        for (String field : fields) {
+            if (field == null || !ElasticsearchSearchService.isSelectableField(field.trim())) {
+                return String.valueOf(field);
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Timestamp range from optional ISO-8601 instants, plus metadata filters
+     *
+     * @throws IllegalArgumentException with a client-facing message if a bound or filter is invalid
+     */
+    private static SearchFilters searchFilters(Object since, Object until, Object metadata) {
+        Instant from = parseInstant("since", since);
+        Instant to = parseInstant("until", until);
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("since must not be after until");
+        }
+        return new SearchFilters(from, to, metadataFilters(metadata));
+    }
+    
+    /**
+     * Accepted values per metadata key
+     *
+     * Either a JSON object of key to value or list of values, or repeated
+     * key:value query parameters; values given for the same key are alternatives.
+     */
+    private static Map<String, List<String>> metadataFilters(Object metadata) {
+        Map<String, List<String>> filters = new LinkedHashMap<>();
+        if (metadata instanceof Map<?, ?> map) {
+            map.forEach((key, value) -> {
+                List<?> values = value instanceof List<?> list ? list : List.of(String.valueOf(value));
+                for (Object v : values) {
+                    addMetadataFilter(filters, String.valueOf(key), String.valueOf(v));
+                }
+            });
+        } else if (metadata instanceof List<?> params) {
+            for (Object param : params) {
+                String filter = String.valueOf(param);
+                int colon = filter.indexOf(':');
+                if (colon < 0) {
+                    throw new IllegalArgumentException("filter must be key:value, got " + filter);
+                }
+                addMetadataFilter(filters, filter.substring(0, colon), filter.substring(colon + 1));
+            }
+        } else if (metadata != null) {
+            throw new IllegalArgumentException("filters must be an object of metadata key to value(s)");
+        }
+        if (filters.size() > 20) {
+            throw new IllegalArgumentException("at most 20 metadata filter keys are allowed");
+        }
+        return filters;
+    }
+    
+    private static void addMetadataFilter(Map<String, List<String>> filters, String key, String value) {
+        if (!SearchFilters.isValidMetadataKey(key)) {
+            throw new IllegalArgumentException("invalid metadata key: " + key);
+        }
+        filters.computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+    }
+    
+    /**
+     * @throws IllegalArgumentException with a client-facing message if a key or the size is invalid
+     */
+    private static FacetRequest facetRequest(List<String> keys, Number size) {
+        FacetRequest facets = new FacetRequest(keys, size != null ? size.intValue() : 10);
+        for (String key : facets.keys()) {
+            if (!SearchFilters.isValidMetadataKey(key)) {
+                throw new IllegalArgumentException("invalid facet key: " + key);
+            }
+        }
+        if (facets.keys().size() > 10) {
+            throw new IllegalArgumentException("at most 10 facets are allowed");
+        }
+        if (facets.size() < 1 || facets.size() > 100) {
+            throw new IllegalArgumentException("facetSize must be between 1 and 100");
+        }
+        return facets;
+    }
+    
+    private static Instant parseInstant(String name, Object value) {
+        if (value == null || value.toString().isEmpty()) {
+            return null;
+        }
+        try {
+            return Instant.parse(value.toString());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(name + " must be an ISO-8601 instant, e.g. 2024-01-31T00:00:00Z");
+        }
+    }
+    
+    /**
+     * Run several searches in one _msearch round trip
+     */
+    @PostMapping("/search/multi")
+    public ResponseEntity<?> multiSearch(
+            @RequestBody Map<String, Object> request,
+            @RequestAttribute("tenantId") String tenantId) {
+        
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> queriesData = (List<Map<String, Object>>) request.get("queries");
+        
+        if (queriesData == null || queriesData.isEmpty()) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "queries array is required"));
+        }
+        
+        if (queriesData.size() > 50) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "at most 50 queries are allowed"));
+        }
+        
+        List<ElasticsearchSearchService.MultiSearchQuery> queries = new ArrayList<>(queriesData.size());
+        for (Map<String, Object> queryData : queriesData) {
+            String query = (String) queryData.get("query");
+            if (query == null || query.isEmpty()) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("error", "query is required"));
+            }
+            
+            int topK = queryData.containsKey("topK") 
+                ? ((Number) queryData.get("topK")).intValue() 
+                : 10;
+            
+            if (topK < 1 || topK > 100) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("error", "topK must be between 1 and 100"));
+            }
+            
+            @SuppressWarnings("unchecked")
+            List<String> fields = (List<String>) queryData.get("fields");
+            String invalidField = invalidField(fields);
+            if (invalidField != null) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("error", "unsupported field: " + invalidField));
+            }
+            SearchFilters filters;
+            try {
+                filters = searchFilters(queryData.get("since"), queryData.get("until"), queryData.get("filters"));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("error", e.getMessage()));
+            }
+            queries.add(new ElasticsearchSearchService.MultiSearchQuery(
+                    query, topK, ElasticsearchSearchService.canonicalFields(fields), filters));
+        }
+        
+        // One permit per query, like batch indexing per document
+        TenantRateLimiter.Decision decision = 
+            rateLimiter.tryAcquire(tenantId, TenantRateLimiter.Operation.SEARCH, queries.size());
+        if (decision.isTooLarge()) {
+            return tooLarge(tenantId, TenantRateLimiter.Operation.SEARCH, "queries", decision);
+        }
+        if (!decision.isAllowed()) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(TenantRateLimiter.LIMIT_HEADER, String.valueOf(decision.getLimit()))
+                    .header(TenantRateLimiter.REMAINING_HEADER, String.valueOf(decision.getRemaining()))
+                    .header(TenantRateLimiter.RETRY_AFTER_HEADER, String.valueOf(decision.getRetryAfterSeconds()))
+                    .body(Map.of("error", "Rate limit exceeded", "tenantId", tenantId));
+        }
+        
+        searchService.awaitConsistency(tenantId, (String) request.get("consistencyToken")).join();
+        return ResponseEntity.ok()
+                .header(TenantRateLimiter.LIMIT_HEADER, String.valueOf(decision.getLimit()))
+                .header(TenantRateLimiter.REMAINING_HEADER, String.valueOf(decision.getRemaining()))
+                .body(new MultiSearchResponseBody(searchService.multiSearch(tenantId, queries), tenantId, BACKEND));
+    }
+    
+    /**
+     * Typed body serialized by Jackson straight to the response stream, without per-hit maps
+     */
+    static SearchResponseBody searchResponseBody(
+            ElasticsearchSearchService.SearchResponse searchResponse, String tenantId) {
+        return new SearchResponseBody(searchResponse.getResults(), searchResponse.getStats(),
+                searchResponse.getFacets(), tenantId, BACKEND);
     }
 
     /**
-     * Delete a document
+     * Retrieve a document
      */
     @GetMapping("/documents/{docId}")
-    public ResponseEntity<Map<String, Object>> getDocument(
+    public Object getDocument(
             @PathVariable String docId,
             @RequestAttribute("tenantId") String tenantId) {
 
-        SearchDocument doc = searchService.retrieveDocument(tenantId, docId);
-
+        if (asyncExecution) {
+            return searchService.retrieveDocumentAsync(tenantId, docId)
+                    .thenApply(this::documentResponse);
+        }
+        return documentResponse(searchService.retrieveDocument(tenantId, docId));
+    }
+    
+    private ResponseEntity<Map<String, Object>> documentResponse(SearchDocument doc) {
         if (doc!=null) {
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -282,6 +708,74 @@ public class SearchController {
         }
     }
 
+    /**
+     * Retrieve several documents in one round trip
+     */
+    @PostMapping("/documents/mget")
+    public ResponseEntity<?> getDocuments(
+            @RequestBody Map<String, Object> request,
+            @RequestAttribute("tenantId") String tenantId) {
+        
+        @SuppressWarnings("unchecked")
+        List<String> ids = (List<String>) request.get("ids");
+        
+        if (ids == null || ids.isEmpty()) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "ids array is required"));
+        }
+        
+        if (ids.size() > 1000) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "at most 1000 ids are allowed"));
+        }
+        
+        if (ids.stream().anyMatch(id -> id == null || id.isEmpty())) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "ids must not be empty"));
+        }
+        
+        // One permit per id, in a bucket of its own so large multi-gets don't starve single reads
+        TenantRateLimiter.Decision decision = 
+            rateLimiter.tryAcquire(tenantId, TenantRateLimiter.Operation.MULTI_GET, ids.size());
+        if (decision.isTooLarge()) {
+            return tooLarge(tenantId, TenantRateLimiter.Operation.MULTI_GET, "ids", decision);
+        }
+        if (!decision.isAllowed()) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(TenantRateLimiter.LIMIT_HEADER, String.valueOf(decision.getLimit()))
+                    .header(TenantRateLimiter.REMAINING_HEADER, String.valueOf(decision.getRemaining()))
+                    .header(TenantRateLimiter.RETRY_AFTER_HEADER, String.valueOf(decision.getRetryAfterSeconds()))
+                    .body(Map.of("error", "Rate limit exceeded", "tenantId", tenantId));
+        }
+        
+        try {
+            List<SearchDocument> documents = searchService.retrieveDocuments(tenantId, ids);
+            List<SearchDocument> results = new ArrayList<>(documents.size());
+            List<String> missing = new ArrayList<>();
+            for (int i = 0; i < ids.size(); i++) {
+                if (documents.get(i) != null) {
+                    results.add(documents.get(i));
+                } else {
+                    missing.add(ids.get(i));
+                }
+            }
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("results", results);
+            response.put("missing", missing);
+            return ResponseEntity.ok()
+                    .header(TenantRateLimiter.LIMIT_HEADER, String.valueOf(decision.getLimit()))
+                    .header(TenantRateLimiter.REMAINING_HEADER, String.valueOf(decision.getRemaining()))
+                    .body(response);
+            
+        } catch (RuntimeException e) {
+            log.error("Error retrieving documents", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to retrieve documents: " + e.getMessage()));
+        }
+    }
+
     /**
      * Delete a document
      */
@@ -290,16 +784,158 @@ public class SearchController {
             @PathVariable String docId,
             @RequestAttribute("tenantId") String tenantId) {
         
-        boolean success = searchService.deleteDocument(tenantId, docId);
+        boolean deleted;
+        try {
+            deleted = searchService.deleteDocument(tenantId, docId);
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to delete document"));
+        }
+        
+        if (!deleted) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "No document found"));
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("docId", docId);
+        response.put("consistencyToken", searchService.consistencyToken(tenantId));
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * Delete documents by id in parallel bulks
+     */
+    @PostMapping("/documents/delete")
+    public ResponseEntity<Map<String, Object>> deleteDocuments(
+            @RequestBody Map<String, Object> request,
+            @RequestAttribute("tenantId") String tenantId) {
+        
+        @SuppressWarnings("unchecked")
+        List<String> ids = (List<String>) request.get("ids");
         
-        if (success) {
+        if (ids == null || ids.isEmpty()) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "ids array is required"));
+        }
+        
+        if (ids.size() > 10000) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "at most 10000 ids are allowed"));
+        }
+        
+        if (ids.stream().anyMatch(id -> id == null || id.isEmpty())) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "ids must not be empty"));
+        }
+        
+        // One permit per id, like batch indexing
+        TenantRateLimiter.Decision decision = 
+            rateLimiter.tryAcquire(tenantId, TenantRateLimiter.Operation.BATCH, ids.size());
+        if (decision.isTooLarge()) {
+            return tooLarge(tenantId, TenantRateLimiter.Operation.BATCH, "documents", decision);
+        }
+        if (!decision.isAllowed()) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(TenantRateLimiter.LIMIT_HEADER, String.valueOf(decision.getLimit()))
+                    .header(TenantRateLimiter.REMAINING_HEADER, String.valueOf(decision.getRemaining()))
+                    .header(TenantRateLimiter.RETRY_AFTER_HEADER, String.valueOf(decision.getRetryAfterSeconds()))
+                    .body(Map.of("error", "Rate limit exceeded", "tenantId", tenantId));
+        }
+        
+        try {
+            ElasticsearchSearchService.BulkIndexResult result = 
+                documentDeletionService.deleteDocuments(tenantId, ids);
+            
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("docId", docId);
-            return ResponseEntity.ok(response);
-        } else {
+            response.put("deleted", result.getSuccessCount());
+            response.put("failed", result.getFailureCount());
+            response.put("total", ids.size());
+            response.put("deleteTimeMs", result.getTimeMs());
+            response.put("errors", result.getErrors());
+            response.put("consistencyToken", searchService.consistencyToken(tenantId));
+            
+            return ResponseEntity.ok()
+                    .header(TenantRateLimiter.LIMIT_HEADER, String.valueOf(decision.getLimit()))
+                    .header(TenantRateLimiter.REMAINING_HEADER, String.valueOf(decision.getRemaining()))
+                    .body(response);
+            
+        } catch (RuntimeException e) {
+            log.error("Error deleting documents", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(Map.of("error", "Failed to delete document"));
+                    .body(Map.of("error", "Failed to delete documents: " + e.getMessage()));
+        }
+    }
+    
+    /**
+     * Start deleting every document that matches timestamp and metadata criteria
+     *
+     * Runs as a background task; the returned taskId is polled for progress.
+     */
+    @PostMapping("/documents/delete-by-query")
+    public ResponseEntity<Map<String, Object>> deleteByQuery(
+            @RequestBody Map<String, Object> request,
+            @RequestAttribute("tenantId") String tenantId) {
+        
+        SearchFilters filters;
+        try {
+            filters = searchFilters(request.get("since"), request.get("until"), request.get("filters"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
+        }
+        if (filters.isEmpty()) {
+            // Deleting everything is not a query; refuse rather than wipe the tenant
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "since, until or filters is required"));
+        }
+        
+        try {
+            String taskId = documentDeletionService.deleteByQuery(tenantId, filters);
+            if (taskId == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Map.of("error", "No documents found"));
+            }
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(Map.of("success", true, "taskId", taskId));
+            
+        } catch (IOException | RuntimeException e) {
+            log.error("Error starting delete-by-query", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to delete documents: " + e.getMessage()));
+        }
+    }
+    
+    /**
+     * Progress of a delete-by-query task
+     */
+    @GetMapping("/documents/delete-tasks/{taskId}")
+    public ResponseEntity<?> getDeleteTask(
+            @PathVariable String taskId,
+            @RequestAttribute("tenantId") String tenantId) throws IOException {
+        
+        try {
+            return ResponseEntity.ok(documentDeletionService.status(tenantId, taskId));
+        } catch (DocumentDeletionService.DeleteTaskNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    /**
+     * Cancel a delete-by-query task; documents already deleted stay deleted
+     */
+    @PostMapping("/documents/delete-tasks/{taskId}/cancel")
+    public ResponseEntity<?> cancelDeleteTask(
+            @PathVariable String taskId,
+            @RequestAttribute("tenantId") String tenantId) throws IOException {
+        
+        try {
+            return ResponseEntity.ok(documentDeletionService.cancel(tenantId, taskId));
+        } catch (DocumentDeletionService.DeleteTaskNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", e.getMessage()));
         }
     }
     
@@ -330,4 +966,26 @@ public class SearchController {
         
         return ResponseEntity.ok(response);
     }
+    
+    // Response bodies
+    
+    record SearchResponseBody(List<SearchResult> results,
+                              ElasticsearchSearchService.QueryStats stats,
+                              @JsonInclude(JsonInclude.Include.NON_EMPTY)
+                              Map<String, List<ElasticsearchSearchService.FacetBucket>> facets,
+                              String tenantId,
+                              String backend) {
+    }
+    
+    record SearchPageBody(List<SearchResult> results,
+                          ElasticsearchSearchService.QueryStats stats,
+                          String cursor,
+                          String tenantId,
+                          String backend) {
+    }
+    
+    record MultiSearchResponseBody(List<ElasticsearchSearchService.SearchResponse> responses,
+                                   String tenantId,
+                                   String backend) {
+    }
 }
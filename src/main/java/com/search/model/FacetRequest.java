@@ -0,0 +1,31 @@
+package com.search.model;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Metadata keys to count values of across all matching documents
+ *
+ * Keys are kept sorted and distinct, so equal requests share cache entries.
+ *
+ * @param keys metadata keys, each counted as metadata.{key}
+ * @param size most frequent values returned per key
+ */
+public record FacetRequest(List<String> keys, int size) {
+
+    public static final FacetRequest NONE = new FacetRequest(List.of(), 0);
+
+    public FacetRequest {
+        keys = keys == null ? List.of() : keys.stream()
+            .filter(Objects::nonNull)
+            .map(String::trim)
+            .filter(k -> !k.isEmpty())
+            .distinct()
+            .sorted()
+            .toList();
+    }
+
+    public boolean isEmpty() {
+        return keys.isEmpty();
+    }
+}
@@ -34,13 +34,4 @@ public class SearchDocument {
     @Builder.Default
     @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss.SSSXXX", timezone = "UTC")
     private Instant timestamp = Instant.now();
-    
-    /**
-     * Get the Elasticsearch index name for this tenant
-     */
-    public static String getIndexName(String tenantId) {
-        // Normalize tenant ID for Elasticsearch index naming
-        // Index names must be lowercase
-        return "search-docs-" + tenantId.toLowerCase().replaceAll("[^a-z0-9-]", "-");
-    }
 }
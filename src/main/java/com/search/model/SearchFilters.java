@@ -0,0 +1,69 @@
+package com.search.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Non-scoring restrictions on a search, applied in filter context
+ *
+ * A timestamp range also lets Elasticsearch skip whole indices whose
+ * documents all fall outside it, e.g. rolled-over indices of a tenant.
+ * Metadata filters match exact values: a document must match every key,
+ * and any one of the values given for a key. Keys and values are kept in
+ * sorted order, so equal filters build the same request and share cache
+ * entries here and in Elasticsearch.
+ *
+ * @param since    earliest document timestamp, inclusive, or null
+ * @param until    latest document timestamp, inclusive, or null
+ * @param metadata accepted values per metadata key
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public record SearchFilters(Instant since, Instant until, Map<String, List<String>> metadata) {
+
+    public static final SearchFilters NONE = new SearchFilters(null, null);
+
+    private static final Pattern METADATA_KEY = Pattern.compile("[A-Za-z0-9_-]+(\\.[A-Za-z0-9_-]+)*");
+
+    public SearchFilters {
+        if (metadata == null || metadata.isEmpty()) {
+            metadata = Map.of();
+        } else {
+            Map<String, List<String>> sorted = new TreeMap<>();
+            metadata.forEach((key, values) -> sorted.put(key, values.stream().distinct().sorted().toList()));
+            metadata = Collections.unmodifiableMap(sorted);
+        }
+    }
+
+    public SearchFilters(Instant since, Instant until) {
+        this(since, until, null);
+    }
+
+    /**
+     * Whether a name can be filtered or faceted on as metadata.{key}
+     */
+    public static boolean isValidMetadataKey(String key) {
+        return key != null && METADATA_KEY.matcher(key).matches();
+    }
+
+    @JsonIgnore
+    public boolean isEmpty() {
+        return !hasTimeRange() && !hasMetadata();
+    }
+
+    @JsonIgnore
+    public boolean hasTimeRange() {
+        return since != null || until != null;
+    }
+
+    @JsonIgnore
+    public boolean hasMetadata() {
+        return !metadata.isEmpty();
+    }
+}
@@ -1,10 +1,16 @@
 package com.search.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.web.util.HtmlUtils;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.Map; /**
  * Search result with relevance scoring
  */
@@ -12,25 +18,70 @@ import java.util.Map; /**
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonPropertyOrder({"docId", "score", "snippet", "metadata", "content", "timestamp"})
 public class SearchResult {
     
     private String docId;
+    
+    // Implied by the request; not repeated per hit
+    @JsonIgnore
     private String tenantId;
     private double score;
     private String snippet;
     private Map<String, Object> metadata;
     
-    public static SearchResult fromDocument(SearchDocument document, double score) {
-        String snippet = document.getContent().length() > 200 
-            ? document.getContent().substring(0, 200) + "..."
-            : document.getContent();
-            
-        return SearchResult.builder()
-                .docId(document.getDocId())
-                .tenantId(document.getTenantId())
+    // Only set when the caller asked for them
+    private String content;
+    private Instant timestamp;
+    
+    /**
+     * Build a result from a source-filtered hit, using highlight fragments as the snippet
+     *
+     * Fragments come back HTML-encoded by Elasticsearch; content used in
+     * their place is escaped the same way.
+     *
+     * Only the requested fields are copied: fields missing from a filtered
+     * _source still carry the document's builder defaults.
+     *
+     * @param fragments highlight fragments for content, or null if none came back
+     * @param fields requested fields: content, timestamp, metadata or metadata.<key>
+     */
+    public static SearchResult fromHit(String docId, SearchDocument document, double score,
+                                       List<String> fragments, List<String> fields) {
+        String snippet;
+        if (fragments != null && !fragments.isEmpty()) {
+            snippet = String.join(" ... ", fragments);
+        } else if (document != null && document.getContent() != null) {
+            snippet = HtmlUtils.htmlEscape(truncate(document.getContent()));
+        } else {
+            snippet = "";
+        }
+        
+        SearchResultBuilder builder = SearchResult.builder()
+                .docId(docId)
                 .score(score)
-                .snippet(snippet)
-                .metadata(document.getMetadata())
-                .build();
+                .snippet(snippet);
+        if (document == null) {
+            return builder.build();
+        }
+        
+        builder.tenantId(document.getTenantId());
+        for (String field : fields) {
+            if (field.equals("content")) {
+                builder.content(document.getContent());
+            } else if (field.equals("timestamp")) {
+                builder.timestamp(document.getTimestamp());
+            } else if (field.startsWith("metadata")) {
+                builder.metadata(document.getMetadata());
+            }
+        }
+        return builder.build();
+    }
+    
+    private static String truncate(String content) {
+        return content.length() > 200 
+            ? content.substring(0, 200) + "..."
+            : content;
     }
 }
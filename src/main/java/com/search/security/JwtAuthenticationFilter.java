@@ -1,5 +1,6 @@
 package com.search.security;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -14,6 +15,7 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
 
 /**
  * JWT authentication filter
@@ -25,6 +27,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     
     private final JwtUtil jwtUtil;
     private final TenantRateLimiter rateLimiter;
+    private final MeterRegistry meterRegistry;
     
     @Override
     protected void doFilterInternal(HttpServletRequest request, 
@@ -51,22 +54,32 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             return;
         }
         
+        long authStart = System.nanoTime();
         try {
             String token = authHeader.substring(7);
             
-            if (!jwtUtil.validateToken(token) || jwtUtil.isTokenExpired(token)) {
+            // Single parse and signature check, or a claims cache hit
+            String tenantId = jwtUtil.authenticate(token);
+            recordAuthTime(authStart, tenantId != null ? "success" : "invalid");
+            
+            if (tenantId == null) {
                 response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
                 response.getWriter().write("{\"error\":\"Invalid or expired token\"}");
                 return;
             }
             
-            String tenantId = jwtUtil.getTenantIdFromToken(token);
-            
-            // Check rate limit
-            if (!rateLimiter.isAllowed(tenantId)) {
-                response.setStatus(429); // Too Many Requests
-                response.getWriter().write("{\"error\":\"Rate limit exceeded\",\"tenantId\":\"" + tenantId + "\"}");
-                return;
+            // Check rate limit; batches and multi-searches are charged per unit once the controller has parsed them
+            TenantRateLimiter.Operation operation = TenantRateLimiter.Operation.resolve(request.getMethod(), path);
+            if (!TenantRateLimiter.Operation.chargedPerUnit(path)) {
+                TenantRateLimiter.Decision decision = rateLimiter.tryAcquire(tenantId, operation, 1);
+                response.setHeader(TenantRateLimiter.LIMIT_HEADER, String.valueOf(decision.getLimit()));
+                response.setHeader(TenantRateLimiter.REMAINING_HEADER, String.valueOf(decision.getRemaining()));
+                if (!decision.isAllowed()) {
+                    response.setHeader(TenantRateLimiter.RETRY_AFTER_HEADER, String.valueOf(decision.getRetryAfterSeconds()));
+                    response.setStatus(429); // Too Many Requests
+                    response.getWriter().write("{\"error\":\"Rate limit exceeded\",\"tenantId\":\"" + tenantId + "\"}");
+                    return;
+                }
             }
             
             // Set authentication in context
@@ -87,4 +100,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         
         filterChain.doFilter(request, response);
     }
+    
+    private void recordAuthTime(long startNanos, String outcome) {
+        meterRegistry.timer("search.auth", "outcome", outcome)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
 }
@@ -1,16 +1,26 @@
 package com.search.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * JWT utility for token generation and validation
@@ -24,9 +34,51 @@ public class JwtUtil {
     @Value("${jwt.expiration:86400000}") // 24 hours in milliseconds
     private long expiration;
     
-    private SecretKey getSigningKey() {
+    @Value("${jwt.claims-cache.max-size:10000}")
+    private long claimsCacheMaxSize;
+    
+    // Built once; both are immutable and thread-safe
+    private SecretKey signingKey;
+    private JwtParser parser;
+    
+    /**
+     * Verified claims keyed by a SHA-256 digest of the token, expiring with the token
+     */
+    private Cache<String, VerifiedToken> verifiedTokens;
+    
+    @PostConstruct
+    void init() {
         byte[] keyBytes = secret.getBytes(StandardCharsets.UTF_8);
-        return Keys.hmacShaKeyFor(keyBytes);
+        signingKey = Keys.hmacShaKeyFor(keyBytes);
+        parser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
+        verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(claimsCacheMaxSize)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+                        long remainingMs = value.expiresAtMillis() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remainingMs));
+                    }
+                    
+                    @Override
+                    public long expireAfterUpdate(String key, VerifiedToken value, long currentTime,
+                                                  long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+                    
+                    @Override
+                    public long expireAfterRead(String key, VerifiedToken value, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+    
+    private SecretKey getSigningKey() {
+        return signingKey;
     }
     
     /**
@@ -46,42 +98,53 @@ public class JwtUtil {
     }
     
     /**
-     * Extract tenant ID from token
+     * Verify a token once and return its tenant ID
+     *
+     * Tokens already verified are answered from the claims cache without
+     * re-checking the signature.
+     *
+     * @return the tenant ID, or null if the token is invalid or expired
      */
-    public String getTenantIdFromToken(String token) {
-        Claims claims = getClaims(token);
-        return claims.get("tenantId", String.class);
-    }
-    
-    /**
-     * Validate token
-     */
-    public boolean validateToken(String token) {
-        try {
-            getClaims(token);
-            return true;
-        } catch (Exception e) {
-            return false;
+    public String authenticate(String token) {
+        String digest = digest(token);
+        VerifiedToken cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null) {
+            return cached.expiresAtMillis() > System.currentTimeMillis() ? cached.tenantId() : null;
         }
-    }
-    
-    /**
-     * Check if token is expired
-     */
-    public boolean isTokenExpired(String token) {
+        
+        Claims claims;
         try {
-            Claims claims = getClaims(token);
-            return claims.getExpiration().before(new Date());
-        } catch (Exception e) {
-            return true;
+            // Signature and expiration are both checked here
+            claims = getClaims(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+        
+        String tenantId = claims.get("tenantId", String.class);
+        Date expiresAt = claims.getExpiration();
+        if (tenantId != null && expiresAt != null) {
+            verifiedTokens.put(digest, new VerifiedToken(tenantId, expiresAt.getTime()));
         }
+        return tenantId;
     }
     
     private Claims getClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
+        return parser
                 .parseSignedClaims(token)
                 .getPayload();
     }
+    
+    private static String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            byte[] hash = sha256.digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            // Every JRE is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private record VerifiedToken(String tenantId, long expiresAtMillis) {
+    }
 }
@@ -0,0 +1,62 @@
+package com.search.security;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Rate limit quotas and operation costs
+ *
+ * A quota is resolved from the most specific match:
+ * tenant + operation, tenant, operation, then the defaults.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "rate-limit")
+public class RateLimitProperties {
+
+    private Quota defaults = new Quota(100.0, 100);
+
+    /**
+     * Buckets unused for this long are evicted
+     */
+    private Duration idleEviction = Duration.ofMinutes(10);
+
+    private long maxBuckets = 100_000;
+
+    /**
+     * Permits charged per unit of an operation, keyed by operation name (e.g. search, batch)
+     */
+    private Map<String, Integer> costs = new HashMap<>();
+
+    /**
+     * Quotas per operation for all tenants, keyed by operation name
+     */
+    private Map<String, Quota> operations = new HashMap<>();
+
+    private Map<String, TenantQuota> tenants = new HashMap<>();
+
+    @Data
+    public static class Quota {
+        private double permitsPerSecond;
+        private long burst;
+
+        public Quota() {
+        }
+
+        public Quota(double permitsPerSecond, long burst) {
+            this.permitsPerSecond = permitsPerSecond;
+            this.burst = burst;
+        }
+    }
+
+    @Data
+    public static class TenantQuota {
+        private Quota quota;
+        private Map<String, Quota> operations = new HashMap<>();
+    }
+}
@@ -0,0 +1,37 @@
+package com.search.security;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+
+/**
+ * Purpose-bound HMAC keys derived from a configured secret
+ *
+ * The key for a purpose is HMAC-SHA256(secret, purpose), the expand step
+ * of HKDF with a single block. A value signed for one purpose, such as a
+ * search cursor, never verifies for another, and none of them is signed
+ * with the JWT key itself even when they share its secret.
+ */
+public final class SigningKeys {
+
+    public static final String HMAC = "HmacSHA256";
+
+    private SigningKeys() {
+    }
+
+    /**
+     * Key for signing values of one purpose
+     *
+     * @param purpose label unique to what the key signs, e.g. "search-cursor"
+     */
+    public static SecretKeySpec derive(String secret, String purpose) {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC));
+            return new SecretKeySpec(mac.doFinal(purpose.getBytes(StandardCharsets.UTF_8)), HMAC);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+}
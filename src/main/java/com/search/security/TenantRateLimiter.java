@@ -1,55 +1,281 @@
 package com.search.security;
 
-import com.google.common.util.concurrent.RateLimiter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Token bucket rate limiter per tenant
+ * Token bucket rate limiter per tenant and operation
+ *
+ * - Lock-free: each bucket is a single AtomicLong updated by CAS (GCRA form
+ *   of the token bucket, storing the theoretical arrival time)
+ * - Weighted: operations cost a configurable number of permits per unit,
+ *   e.g. one per document in a batch. A request costing more than the
+ *   burst can never pass and is reported as too large rather than limited
+ * - Bounded: idle buckets are evicted
  */
 @Slf4j
 @Component
 public class TenantRateLimiter {
-    
-    private final Map<String, RateLimiter> limiters = new ConcurrentHashMap<>();
-    private final double permitsPerSecond;
-    
-    public TenantRateLimiter() {
-        this.permitsPerSecond = 100.0; // 100 requests per second per tenant
-    }
-    
-    public TenantRateLimiter(double permitsPerSecond) {
-        this.permitsPerSecond = permitsPerSecond;
-    }
-    
+
+    public static final String LIMIT_HEADER = "X-RateLimit-Limit";
+    public static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+    public static final String RETRY_AFTER_HEADER = "Retry-After";
+
+    /**
+     * Operations with separate buckets and costs
+     */
+    public enum Operation {
+        SEARCH,
+        INDEX,
+        BATCH,
+        STREAM,
+        EXPORT,
+        IMPORT,
+        DELETE_BY_QUERY,
+        GET,
+        MULTI_GET,
+        DELETE,
+        OTHER;
+
+        /**
+         * Classify a request by method and path
+         */
+        public static Operation resolve(String method, String path) {
+            if (path.startsWith("/search")) {
+                return SEARCH;
+            }
+            if (path.startsWith("/admin/import")) {
+                return IMPORT;
+            }
+            if (path.startsWith("/documents")) {
+                if (path.equals("/documents/batch")) {
+                    return BATCH;
+                }
+                if (path.equals("/documents/stream")) {
+                    return STREAM;
+                }
+                if (path.equals("/documents/export")) {
+                    return EXPORT;
+                }
+                if (path.equals("/documents/mget")) {
+                    return MULTI_GET;
+                }
+                // Deletes by id are charged per id, like batches
+                if (path.equals("/documents/delete")) {
+                    return BATCH;
+                }
+                if (path.equals("/documents/delete-by-query")) {
+                    return DELETE_BY_QUERY;
+                }
+                if (path.startsWith("/documents/delete-tasks/")) {
+                    return method.equals("POST") ? DELETE : GET;
+                }
+                return switch (method) {
+                    case "POST" -> INDEX;
+                    case "DELETE" -> DELETE;
+                    default -> GET;
+                };
+            }
+            return OTHER;
+        }
+
+        /**
+         * Whether the controller charges the request per unit once it has parsed the body
+         *
+         * Batches and deletes by id cost a permit per document, multi-searches
+         * one per query and multi-gets one per id.
+         */
+        public static boolean chargedPerUnit(String path) {
+            return path.equals("/documents/batch") || path.equals("/documents/delete")
+                    || path.equals("/search/multi") || path.equals("/documents/mget");
+        }
+
+        String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final RateLimitProperties properties;
+    private final Cache<BucketKey, Bucket> buckets;
+
+    public TenantRateLimiter(RateLimitProperties properties) {
+        this.properties = properties;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxBuckets())
+                .expireAfterAccess(properties.getIdleEviction())
+                .build();
+    }
+
+    /**
+     * Charge units of an operation against the tenant's bucket for it
+     */
+    public Decision tryAcquire(String tenantId, Operation operation, int units) {
+        Bucket bucket = bucket(tenantId, operation);
+        long cost = (long) units * costOf(operation);
+
+        Decision decision = bucket.tryAcquire(cost, System.nanoTime());
+        if (decision.isTooLarge()) {
+            log.warn("Request of {} units exceeds the burst for tenant: {} ({})", units, tenantId, operation.key());
+        } else if (!decision.isAllowed()) {
+            log.warn("Rate limit exceeded for tenant: {} ({})", tenantId, operation.key());
+        }
+        return decision;
+    }
+
     /**
-     * Check if request is allowed for tenant
+     * Charge units of an operation, waiting until the tenant's bucket has room
+     *
+     * Used where the caller can push back instead of rejecting, such as a
+     * stream that stops reading its body while it waits.
+     *
+     * @return the allowed decision, or the rejection if the units exceed the burst
      */
-    public boolean isAllowed(String tenantId) {
-        RateLimiter limiter = limiters.computeIfAbsent(
-            tenantId, 
-            k -> RateLimiter.create(permitsPerSecond)
-        );
-        
-        boolean allowed = limiter.tryAcquire();
-        
-        if (!allowed) {
-            log.warn("Rate limit exceeded for tenant: {}", tenantId);
-        }
-        
-        return allowed;
-    }
-    
+    public Decision acquire(String tenantId, Operation operation, int units) throws InterruptedException {
+        Bucket bucket = bucket(tenantId, operation);
+        long cost = (long) units * costOf(operation);
+
+        while (true) {
+            Decision decision = bucket.tryAcquire(cost, System.nanoTime());
+            if (decision.isAllowed() || decision.isTooLarge()) {
+                return decision;
+            }
+            TimeUnit.NANOSECONDS.sleep(decision.retryAfterNanos);
+        }
+    }
+
     /**
-     * Get rate limiter for a tenant
+     * Most units of an operation a single request can be charged for
      */
-    public RateLimiter getRateLimiter(String tenantId) {
-        return limiters.computeIfAbsent(
-            tenantId,
-            k -> RateLimiter.create(permitsPerSecond)
-        );
+    public long maxUnits(String tenantId, Operation operation) {
+        return bucket(tenantId, operation).burst / costOf(operation);
+    }
+
+    private Bucket bucket(String tenantId, Operation operation) {
+        return buckets.get(new BucketKey(tenantId, operation), this::newBucket);
+    }
+
+    private int costOf(Operation operation) {
+        return properties.getCosts().getOrDefault(operation.key(), 1);
+    }
+
+    private Bucket newBucket(BucketKey key) {
+        RateLimitProperties.Quota quota = null;
+        RateLimitProperties.TenantQuota tenantQuota = properties.getTenants().get(key.tenantId());
+        if (tenantQuota != null) {
+            quota = tenantQuota.getOperations().get(key.operation().key());
+            if (quota == null) {
+                quota = tenantQuota.getQuota();
+            }
+        }
+        if (quota == null) {
+            quota = properties.getOperations().get(key.operation().key());
+        }
+        if (quota == null) {
+            quota = properties.getDefaults();
+        }
+        return new Bucket(quota.getPermitsPerSecond(), quota.getBurst());
+    }
+
+    private record BucketKey(String tenantId, Operation operation) {
+    }
+
+    /**
+     * Token bucket as a generic cell rate algorithm
+     *
+     * Instead of a token count the bucket stores the theoretical arrival time
+     * (TAT): the instant at which it would be full again. A request costing n
+     * permits pushes TAT forward by n emission intervals and is allowed if TAT
+     * stays within burst intervals of now.
+     */
+    static final class Bucket {
+        private final long emissionIntervalNanos;
+        private final long capacityNanos;
+        private final long burst;
+        private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+
+        Bucket(double permitsPerSecond, long burst) {
+            this.emissionIntervalNanos = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+            this.burst = Math.max(1L, burst);
+            this.capacityNanos = emissionIntervalNanos * this.burst;
+        }
+
+        Decision tryAcquire(long cost, long now) {
+            long increment = cost * emissionIntervalNanos;
+            if (increment > capacityNanos) {
+                // Even a full bucket can't cover it; waiting won't help
+                long tat = theoreticalArrival.get();
+                long base = tat == Long.MIN_VALUE || tat - now < 0 ? now : tat;
+                return new Decision(false, burst, remaining(base - now), 0, true);
+            }
+            while (true) {
+                long tat = theoreticalArrival.get();
+                long base = tat == Long.MIN_VALUE || tat - now < 0 ? now : tat;
+                long newTat = base + increment;
+                long backlog = newTat - now;
+
+                if (backlog > capacityNanos) {
+                    long retryAfterNanos = backlog - capacityNanos;
+                    return new Decision(false, burst, remaining(base - now), retryAfterNanos, false);
+                }
+                if (theoreticalArrival.compareAndSet(tat, newTat)) {
+                    return new Decision(true, burst, remaining(backlog), 0, false);
+                }
+            }
+        }
+
+        private long remaining(long backlogNanos) {
+            return Math.max(0, (capacityNanos - backlogNanos) / emissionIntervalNanos);
+        }
+    }
+
+    /**
+     * Outcome of a rate limit check, with what the client needs to back off
+     */
+    public static final class Decision {
+        private final boolean allowed;
+        private final long limit;
+        private final long remaining;
+        private final long retryAfterNanos;
+        private final boolean tooLarge;
+
+        Decision(boolean allowed, long limit, long remaining, long retryAfterNanos, boolean tooLarge) {
+            this.allowed = allowed;
+            this.limit = limit;
+            this.remaining = remaining;
+            this.retryAfterNanos = retryAfterNanos;
+            this.tooLarge = tooLarge;
+        }
+
+        public boolean isAllowed() {
+            return allowed;
+        }
+
+        /**
+         * Rejected because the cost exceeds the burst; retrying the same request can never pass
+         */
+        public boolean isTooLarge() {
+            return tooLarge;
+        }
+
+        public long getLimit() {
+            return limit;
+        }
+
+        public long getRemaining() {
+            return remaining;
+        }
+
+        /**
+         * Whole seconds to wait before retrying, rounded up as Retry-After requires
+         */
+        public long getRetryAfterSeconds() {
+            return (retryAfterNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+        }
     }
 }
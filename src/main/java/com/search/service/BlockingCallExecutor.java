@@ -0,0 +1,43 @@
+package com.search.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool for the few blocking calls left on the non-blocking path
+ *
+ * Placing a tenant the registry doesn't know yet takes round trips on the
+ * blocking client. Running them here keeps them off the common ForkJoin
+ * pool, which every CompletableFuture continuation in the JVM shares.
+ */
+@Component
+public class BlockingCallExecutor {
+
+    private final ExecutorService executor;
+
+    public BlockingCallExecutor(@Value("${search.execution.blocking-threads:8}") int threads) {
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "blocking-call");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Run a blocking call on the pool
+     */
+    public <T> CompletableFuture<T> supplyAsync(Supplier<T> call) {
+        return CompletableFuture.supplyAsync(call, executor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,296 @@
+package com.search.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.ErrorCause;
+import co.elastic.clients.elasticsearch._types.Refresh;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import com.search.model.SearchDocument;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Size-aware bulk indexing and deletion
+ *
+ * - Splits a document list into bulks bounded by document count and payload bytes;
+ *   deletes carry no payload and are bounded by count only
+ * - Sends up to a configured number of bulks concurrently
+ * - Resends only the items rejected with 429 / es_rejected_execution_exception,
+ *   with exponential backoff and jitter
+ */
+@Slf4j
+@Component
+public class BulkIndexer {
+
+    /**
+     * Fixed per-document overhead on top of the content: ids, timestamp, JSON framing
+     */
+    private static final int DOCUMENT_OVERHEAD_BYTES = 256;
+
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final String REJECTED_EXECUTION = "es_rejected_execution_exception";
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final int maxDocs;
+    private final long maxBytes;
+    private final int maxRetries;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final ExecutorService bulkExecutor;
+
+    public BulkIndexer(
+            ElasticsearchClient elasticsearchClient,
+            @Value("${search.bulk.max-docs:1000}") int maxDocs,
+            @Value("${search.bulk.max-bytes:5242880}") long maxBytes,
+            @Value("${search.bulk.concurrency:4}") int concurrency,
+            @Value("${search.bulk.max-retries:3}") int maxRetries,
+            @Value("${search.bulk.initial-backoff:100ms}") Duration initialBackoff,
+            @Value("${search.bulk.max-backoff:5s}") Duration maxBackoff) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.maxDocs = maxDocs;
+        this.maxBytes = maxBytes;
+        this.maxRetries = maxRetries;
+        this.initialBackoffMs = initialBackoff.toMillis();
+        this.maxBackoffMs = maxBackoff.toMillis();
+        this.bulkExecutor = Executors.newFixedThreadPool(concurrency, r -> {
+            Thread thread = new Thread(r, "bulk-indexer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Index documents into the placements chosen by placementFor
+     *
+     * @param refresh refresh policy applied to every bulk, or null for none
+     * @param indexed called from the bulk threads with each indexed document
+     *                and the concrete index it landed in
+     */
+    public ElasticsearchSearchService.BulkIndexResult index(
+            List<SearchDocument> documents,
+            Function<SearchDocument, TenantIndexRegistry.TenantPlacement> placementFor,
+            Refresh refresh,
+            BiConsumer<SearchDocument, String> indexed) {
+        return send(split(documents), chunk -> buildRequest(chunk, placementFor, refresh),
+            SearchDocument::getDocId, indexed);
+    }
+
+    /**
+     * Delete documents of one tenant by id
+     *
+     * An id that doesn't exist counts as deleted.
+     *
+     * @param refresh refresh policy applied to every bulk, or null for none
+     */
+    public ElasticsearchSearchService.BulkIndexResult delete(TenantIndexRegistry.TenantPlacement placement,
+                                                             List<String> docIds, Refresh refresh) {
+        List<List<String>> chunks = new ArrayList<>();
+        for (int i = 0; i < docIds.size(); i += maxDocs) {
+            chunks.add(docIds.subList(i, Math.min(i + maxDocs, docIds.size())));
+        }
+        return send(chunks, chunk -> buildDeleteRequest(placement, chunk, refresh), docId -> docId,
+            (docId, index) -> { });
+    }
+
+    private <T> ElasticsearchSearchService.BulkIndexResult send(List<List<T>> chunks,
+                                                                Function<List<T>, BulkRequest> requestFor,
+                                                                Function<T, String> idOf,
+                                                                BiConsumer<T, String> succeeded) {
+        long startTime = System.nanoTime();
+
+        List<CompletableFuture<ChunkOutcome>> futures = new ArrayList<>();
+        for (List<T> chunk : chunks) {
+            futures.add(CompletableFuture.supplyAsync(
+                () -> sendChunk(chunk, requestFor, idOf, succeeded), bulkExecutor));
+        }
+
+        int successCount = 0;
+        int failureCount = 0;
+        List<ElasticsearchSearchService.ItemError> errors = new ArrayList<>();
+        for (CompletableFuture<ChunkOutcome> future : futures) {
+            ChunkOutcome outcome = future.join();
+            successCount += outcome.successCount;
+            failureCount += outcome.errors.size();
+            errors.addAll(outcome.errors);
+        }
+
+        double timeMs = (System.nanoTime() - startTime) / 1_000_000.0;
+        return new ElasticsearchSearchService.BulkIndexResult(successCount, failureCount, timeMs, errors);
+    }
+
+    /**
+     * Cut documents into bulks bounded by maxDocs and maxBytes
+     */
+    List<List<SearchDocument>> split(List<SearchDocument> documents) {
+        List<List<SearchDocument>> chunks = new ArrayList<>();
+        List<SearchDocument> current = new ArrayList<>();
+        long currentBytes = 0;
+
+        for (SearchDocument doc : documents) {
+            int bytes = estimateBytes(doc);
+            if (!current.isEmpty() && (current.size() >= maxDocs || currentBytes + bytes > maxBytes)) {
+                chunks.add(current);
+                current = new ArrayList<>();
+                currentBytes = 0;
+            }
+            current.add(doc);
+            currentBytes += bytes;
+        }
+        if (!current.isEmpty()) {
+            chunks.add(current);
+        }
+        return chunks;
+    }
+
+    private <T> ChunkOutcome sendChunk(List<T> chunk,
+                                       Function<List<T>, BulkRequest> requestFor,
+                                       Function<T, String> idOf,
+                                       BiConsumer<T, String> succeeded) {
+        ChunkOutcome outcome = new ChunkOutcome();
+        List<T> pending = chunk;
+
+        for (int attempt = 0; !pending.isEmpty(); attempt++) {
+            if (attempt > 0) {
+                sleepBackoff(attempt);
+            }
+            boolean lastAttempt = attempt >= maxRetries;
+
+            BulkResponse response;
+            try {
+                response = elasticsearchClient.bulk(requestFor.apply(pending));
+            } catch (ElasticsearchException e) {
+                if (e.status() == TOO_MANY_REQUESTS && !lastAttempt) {
+                    log.debug("Bulk of {} rejected with 429, retrying (attempt {})", pending.size(), attempt + 1);
+                    continue;
+                }
+                failAll(outcome, pending, idOf, e.status(), e.error() != null ? e.error().type() : null, e.getMessage());
+                return outcome;
+            } catch (IOException e) {
+                log.error("Error in bulk request: {}", e.getMessage(), e);
+                failAll(outcome, pending, idOf, 0, "io_exception", e.getMessage());
+                return outcome;
+            }
+
+            // Bulk responses keep the order of the request operations
+            List<T> retry = new ArrayList<>();
+            List<BulkResponseItem> items = response.items();
+            for (int i = 0; i < items.size(); i++) {
+                BulkResponseItem item = items.get(i);
+                ErrorCause error = item.error();
+                if (error == null) {
+                    outcome.successCount++;
+                    succeeded.accept(pending.get(i), item.index());
+                } else if (isRetryable(item) && !lastAttempt) {
+                    retry.add(pending.get(i));
+                } else {
+                    // The client's id, not the _id it may be stored under
+                    outcome.errors.add(new ElasticsearchSearchService.ItemError(
+                        idOf.apply(pending.get(i)), item.status(), error.type(), error.reason()));
+                }
+            }
+
+            if (!retry.isEmpty()) {
+                log.debug("Retrying {} rejected items of {} (attempt {})", retry.size(), pending.size(), attempt + 1);
+            }
+            pending = retry;
+        }
+        return outcome;
+    }
+
+    private BulkRequest buildRequest(List<SearchDocument> documents,
+                                     Function<SearchDocument, TenantIndexRegistry.TenantPlacement> placementFor,
+                                     Refresh refresh) {
+        BulkRequest.Builder bulkBuilder = new BulkRequest.Builder();
+        for (SearchDocument doc : documents) {
+            TenantIndexRegistry.TenantPlacement placement = placementFor.apply(doc);
+            bulkBuilder.operations(op -> op
+                .index(idx -> idx
+                    .index(placement.target())
+                    .id(placement.documentId(doc.getDocId()))
+                    .routing(placement.routing())
+                    .document(doc)
+                )
+            );
+        }
+        if (refresh != null) {
+            bulkBuilder.refresh(refresh);
+        }
+        return bulkBuilder.build();
+    }
+
+    private static BulkRequest buildDeleteRequest(TenantIndexRegistry.TenantPlacement placement,
+                                                  List<String> docIds, Refresh refresh) {
+        BulkRequest.Builder bulkBuilder = new BulkRequest.Builder();
+        for (String docId : docIds) {
+            bulkBuilder.operations(op -> op
+                .delete(d -> d
+                    .index(placement.target())
+                    .id(placement.documentId(docId))
+                )
+            );
+        }
+        if (refresh != null) {
+            bulkBuilder.refresh(refresh);
+        }
+        return bulkBuilder.build();
+    }
+
+    private static boolean isRetryable(BulkResponseItem item) {
+        return item.status() == TOO_MANY_REQUESTS
+            || (item.error() != null && REJECTED_EXECUTION.equals(item.error().type()));
+    }
+
+    private static <T> void failAll(ChunkOutcome outcome, List<T> items, Function<T, String> idOf,
+                                    int status, String type, String reason) {
+        for (T item : items) {
+            outcome.errors.add(new ElasticsearchSearchService.ItemError(idOf.apply(item), status, type, reason));
+        }
+    }
+
+    /**
+     * Exponential backoff with equal jitter: half fixed, half random
+     */
+    private void sleepBackoff(int attempt) {
+        long ceiling = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt - 1, 20));
+        long delay = ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Rough serialized size of a document, used to bound bulk payloads
+     */
+    public static int estimateBytes(SearchDocument document) {
+        int contentLength = document.getContent() != null ? document.getContent().length() : 0;
+        int metadataLength = document.getMetadata() != null ? document.getMetadata().toString().length() : 0;
+        return contentLength + metadataLength + DOCUMENT_OVERHEAD_BYTES;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        bulkExecutor.shutdown();
+    }
+
+    private static final class ChunkOutcome {
+        private int successCount;
+        private final List<ElasticsearchSearchService.ItemError> errors = new ArrayList<>();
+    }
+}
@@ -0,0 +1,115 @@
+package com.search.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.search.model.SearchDocument;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process cache of recently read documents per tenant
+ *
+ * Writes advance a clock once acknowledged: a write to a document leaves
+ * a tombstone stamped with the new time, a bulk write stamps the whole
+ * tenant. A read is stamped with the time before it went to the cluster,
+ * and is only cached and served if no write to its document or tenant
+ * came later, so a read racing a write can't leave the old copy behind.
+ * Writes made by other instances are only seen once the entry expires.
+ */
+@Component
+public class DocumentCache {
+
+    private final boolean enabled;
+    private final Cache<Key, Entry> cache;
+    private final AtomicLong clock = new AtomicLong();
+    private final Map<String, Long> tenantWrites = new ConcurrentHashMap<>();
+
+    public DocumentCache(
+            MeterRegistry meterRegistry,
+            @Value("${search.document-cache.enabled:true}") boolean enabled,
+            @Value("${search.document-cache.max-size:10000}") long maxSize,
+            @Value("${search.document-cache.ttl:30s}") Duration ttl) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "search.documents");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Version to pass to {@link #put}; take it before reading from the cluster
+     */
+    public long readVersion() {
+        return clock.get();
+    }
+
+    /**
+     * Cached copy of a document, or null if it isn't cached or may be stale
+     */
+    public SearchDocument get(String tenantId, String docId) {
+        if (!enabled) {
+            return null;
+        }
+        Entry entry = cache.getIfPresent(new Key(tenantId, docId));
+        if (entry == null || entry.document == null) {
+            return null;
+        }
+        Long tenantWrite = tenantWrites.get(tenantId);
+        return tenantWrite == null || entry.version >= tenantWrite ? entry.document : null;
+    }
+
+    /**
+     * Cache a document read at readVersion, unless it has been written since
+     *
+     * A read whose version equals a tombstone's started after that write.
+     */
+    public void put(String tenantId, String docId, long readVersion, SearchDocument document) {
+        if (!enabled || document == null) {
+            return;
+        }
+        cache.asMap().compute(new Key(tenantId, docId), (key, existing) ->
+                existing != null && existing.version > readVersion ? existing : new Entry(readVersion, document));
+    }
+
+    /**
+     * Forget a document; call once a write to it is acknowledged
+     */
+    public void invalidate(String tenantId, String docId) {
+        if (!enabled) {
+            return;
+        }
+        cache.put(new Key(tenantId, docId), new Entry(clock.incrementAndGet(), null));
+    }
+
+    /**
+     * Forget every document of a tenant; call after bulk writes
+     */
+    public void invalidateTenant(String tenantId) {
+        if (!enabled) {
+            return;
+        }
+        tenantWrites.put(tenantId, clock.incrementAndGet());
+    }
+
+    private record Key(String tenantId, String docId) {
+    }
+
+    /**
+     * A null document is a tombstone left by a write
+     */
+    private record Entry(long version, SearchDocument document) {
+    }
+}
@@ -0,0 +1,328 @@
+package com.search.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.BulkIndexByScrollFailure;
+import co.elastic.clients.elasticsearch._types.Conflicts;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.SlicesCalculation;
+import co.elastic.clients.elasticsearch.core.DeleteByQueryResponse;
+import co.elastic.clients.elasticsearch.tasks.GetTasksResponse;
+import co.elastic.clients.json.JsonData;
+import com.search.model.SearchFilters;
+import com.search.security.SigningKeys;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonNumber;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonValue;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Deleting many documents of a tenant at once
+ *
+ * - By id: one bulk of delete operations per chunk of ids, sent in parallel
+ *   and retried on rejection like bulk indexing; for a rollover series, one
+ *   delete_by_query on the ids so copies in every index of the series go
+ * - By criteria: delete_by_query over the tenant's timestamp range and
+ *   metadata filters, started as a background task with slices=auto so
+ *   every shard deletes in parallel, throttled to requests-per-second
+ *
+ * A task is handed out as a handle signed for the tenant, so one tenant
+ * can neither watch nor cancel another's deletes. Documents modified while
+ * a task runs are skipped rather than aborting it, and reported as
+ * version conflicts.
+ */
+@Slf4j
+@Service
+public class DocumentDeletionService {
+
+    private static final String HMAC = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    private static final String RESOURCE_NOT_FOUND = "resource_not_found_exception";
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final TenantIndexRegistry indexRegistry;
+    private final BulkIndexer bulkIndexer;
+    private final WriteBehindIndexer writeBehindIndexer;
+    private final RolloverManager rolloverManager;
+    private final SearchResultCache resultCache;
+    private final DocumentCache documentCache;
+    private final RefreshManager refreshManager;
+    private final SearchMetrics searchMetrics;
+    private final float requestsPerSecond;
+    private final SecretKeySpec key;
+
+    public DocumentDeletionService(
+            ElasticsearchClient elasticsearchClient,
+            TenantIndexRegistry indexRegistry,
+            BulkIndexer bulkIndexer,
+            WriteBehindIndexer writeBehindIndexer,
+            RolloverManager rolloverManager,
+            SearchResultCache resultCache,
+            DocumentCache documentCache,
+            RefreshManager refreshManager,
+            SearchMetrics searchMetrics,
+            @Value("${search.delete.requests-per-second:1000}") float requestsPerSecond,
+            @Value("${search.delete.task-secret:${jwt.secret}}") String secret) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.indexRegistry = indexRegistry;
+        this.bulkIndexer = bulkIndexer;
+        this.writeBehindIndexer = writeBehindIndexer;
+        this.rolloverManager = rolloverManager;
+        this.resultCache = resultCache;
+        this.documentCache = documentCache;
+        this.refreshManager = refreshManager;
+        this.searchMetrics = searchMetrics;
+        this.requestsPerSecond = requestsPerSecond;
+        this.key = SigningKeys.derive(secret, "delete-task");
+    }
+
+    /**
+     * Delete documents by id; ids that don't exist count as deleted
+     */
+    public ElasticsearchSearchService.BulkIndexResult deleteDocuments(String tenantId, List<String> docIds) {
+        long startTime = System.nanoTime();
+        TenantIndexRegistry.TenantPlacement placement;
+        try {
+            placement = indexRegistry.placement(tenantId);
+            if (placement != null && placement.shared()) {
+                // Ids missed through a stale shared placement would count as deleted
+                placement = indexRegistry.reload(tenantId);
+            }
+            if (placement == null) {
+                searchMetrics.record(SearchMetrics.Operation.BULK_DELETE, tenantId, SearchMetrics.NOT_FOUND, startTime);
+                return new ElasticsearchSearchService.BulkIndexResult(docIds.size(), 0,
+                    (System.nanoTime() - startTime) / 1_000_000.0, List.of());
+            }
+        } catch (IOException | ElasticsearchException e) {
+            searchMetrics.record(SearchMetrics.Operation.BULK_DELETE, tenantId, SearchMetrics.ERROR, startTime);
+            log.error("Error deleting {} documents for tenant {}: {}", docIds.size(), tenantId, e.getMessage(), e);
+            throw new RuntimeException("Failed to delete documents", e);
+        }
+
+        // Buffered writes of these ids would otherwise land after the delete
+        writeBehindIndexer.flushTenant(tenantId);
+        ElasticsearchSearchService.BulkIndexResult result = placement.rollover()
+            ? deleteAllCopies(tenantId, docIds)
+            : bulkIndexer.delete(placement, docIds, refreshManager.writeRefresh());
+
+        refreshManager.recordWrite(tenantId, docIds.size());
+        resultCache.invalidateTenant(tenantId);
+        documentCache.invalidateTenant(tenantId);
+
+        String outcome = result.getFailureCount() == 0 ? SearchMetrics.SUCCESS
+            : result.getSuccessCount() == 0 ? SearchMetrics.ERROR
+            : SearchMetrics.PARTIAL;
+        searchMetrics.record(SearchMetrics.Operation.BULK_DELETE, tenantId, outcome, startTime);
+        log.info("Bulk deleted {} documents for tenant {} ({} success, {} failures) in {}ms",
+                docIds.size(), tenantId, result.getSuccessCount(), result.getFailureCount(), result.getTimeMs());
+        return result;
+    }
+
+    /**
+     * Delete the ids from every index of a rollover series, which deletes by id can't reach
+     */
+    private ElasticsearchSearchService.BulkIndexResult deleteAllCopies(String tenantId, List<String> docIds) {
+        long startTime = System.nanoTime();
+        List<ElasticsearchSearchService.ItemError> errors = new ArrayList<>();
+        try {
+            DeleteByQueryResponse response = rolloverManager.deleteAllCopies(
+                tenantId, docIds, refreshManager.writeRefresh() != null);
+            for (BulkIndexByScrollFailure failure : response.failures()) {
+                errors.add(new ElasticsearchSearchService.ItemError(
+                    failure.id(), failure.status(), failure.cause().type(), failure.cause().reason()));
+            }
+        } catch (IOException | ElasticsearchException e) {
+            log.error("Error deleting {} documents for tenant {}: {}", docIds.size(), tenantId, e.getMessage(), e);
+            int status = e instanceof ElasticsearchException ee ? ee.status() : 0;
+            String type = e instanceof ElasticsearchException ee && ee.error() != null ? ee.error().type() : "io_exception";
+            for (String docId : docIds) {
+                errors.add(new ElasticsearchSearchService.ItemError(docId, status, type, e.getMessage()));
+            }
+        }
+        double timeMs = (System.nanoTime() - startTime) / 1_000_000.0;
+        // A failure is reported per copy, so one id can fail more than once
+        return new ElasticsearchSearchService.BulkIndexResult(
+            Math.max(0, docIds.size() - errors.size()), errors.size(), timeMs, errors);
+    }
+
+    /**
+     * Start deleting every document of the tenant that matches the filters
+     *
+     * @return handle for {@link #status} and {@link #cancel}, or null if the tenant has no documents
+     */
+    public String deleteByQuery(String tenantId, SearchFilters filters) throws IOException {
+        long startTime = System.nanoTime();
+        if (indexRegistry.placement(tenantId) == null) {
+            searchMetrics.record(SearchMetrics.Operation.DELETE_BY_QUERY, tenantId, SearchMetrics.NOT_FOUND, startTime);
+            return null;
+        }
+
+        writeBehindIndexer.flushTenant(tenantId);
+        DeleteByQueryResponse response = elasticsearchClient.deleteByQuery(d -> d
+            // The tenant's alias keeps other tenants of a shared index out of reach
+            .index(TenantIndexRegistry.targetName(tenantId))
+            .query(ElasticsearchSearchService.filterQuery(filters))
+            .slices(s -> s.computed(SlicesCalculation.Auto))
+            .requestsPerSecond(requestsPerSecond)
+            .conflicts(Conflicts.Proceed)
+            // Deleted documents leave search results as soon as the task is done
+            .refresh(true)
+            .waitForCompletion(false)
+        );
+        resultCache.invalidateTenant(tenantId);
+        documentCache.invalidateTenant(tenantId);
+        searchMetrics.record(SearchMetrics.Operation.DELETE_BY_QUERY, tenantId, SearchMetrics.SUCCESS, startTime);
+
+        log.info("Started delete-by-query task {} for tenant {} with {}", response.task(), tenantId, filters);
+        return handle(tenantId, response.task());
+    }
+
+    /**
+     * Progress of a delete-by-query task
+     *
+     * @throws DeleteTaskNotFoundException if the handle is invalid, another tenant's or unknown
+     */
+    public DeleteTask status(String tenantId, String taskHandle) throws IOException {
+        String taskId = taskId(tenantId, taskHandle);
+        GetTasksResponse task;
+        try {
+            task = elasticsearchClient.tasks().get(g -> g.taskId(taskId));
+        } catch (ElasticsearchException e) {
+            if (e.status() == 404 || (e.error() != null && RESOURCE_NOT_FOUND.equals(e.error().type()))) {
+                throw new DeleteTaskNotFoundException();
+            }
+            throw e;
+        }
+
+        if (task.completed()) {
+            // Deletes kept landing while the task ran; drop what was cached meanwhile
+            resultCache.invalidateTenant(tenantId);
+            documentCache.invalidateTenant(tenantId);
+        }
+        return toDeleteTask(taskHandle, task);
+    }
+
+    /**
+     * Cancel a running delete-by-query task; documents already deleted stay deleted
+     *
+     * @return status after cancelling; a task that had finished is returned unchanged
+     */
+    public DeleteTask cancel(String tenantId, String taskHandle) throws IOException {
+        String taskId = taskId(tenantId, taskHandle);
+        try {
+            elasticsearchClient.tasks().cancel(c -> c.taskId(taskId));
+            log.info("Cancelled delete-by-query task {} for tenant {}", taskId, tenantId);
+        } catch (ElasticsearchException e) {
+            // Nothing to cancel once the task has finished; its status says how it ended
+            log.debug("Cancel of task {} failed: {}", taskId, e.getMessage());
+        }
+        return status(tenantId, taskHandle);
+    }
+
+    private static DeleteTask toDeleteTask(String taskHandle, GetTasksResponse task) {
+        // A finished task reports its response; a running one its live status
+        JsonData source = task.completed() && task.response() != null ? task.response() : task.task().status();
+        JsonObject json = source != null ? source.toJson().asJsonObject() : JsonValue.EMPTY_JSON_OBJECT;
+
+        JsonArray failures = json.containsKey("failures") ? json.getJsonArray("failures") : null;
+        String error = task.error() != null ? task.error().reason()
+            : failures != null && !failures.isEmpty() ? failures.getJsonObject(0).toString()
+            : null;
+        boolean cancelled = json.containsKey("canceled") || Boolean.TRUE.equals(task.task().cancelled());
+
+        return DeleteTask.builder()
+            .taskId(taskHandle)
+            .completed(task.completed())
+            .cancelled(cancelled)
+            .total(number(json, "total"))
+            .deleted(number(json, "deleted"))
+            .versionConflicts(number(json, "version_conflicts"))
+            .batches(number(json, "batches"))
+            .failures(failures != null ? failures.size() : 0)
+            .error(error)
+            .requestsPerSecond(json.containsKey("requests_per_second")
+                ? json.getJsonNumber("requests_per_second").doubleValue() : 0)
+            .runningTimeMs(task.task().runningTimeInNanos() / 1_000_000)
+            .build();
+    }
+
+    private static long number(JsonObject json, String field) {
+        JsonValue value = json.get(field);
+        return value instanceof JsonNumber n ? n.longValue() : 0;
+    }
+
+    /**
+     * Task id followed by a signature binding it to the tenant
+     */
+    private String handle(String tenantId, String taskId) {
+        return taskId + "." + ENCODER.encodeToString(sign(tenantId, taskId));
+    }
+
+    private String taskId(String tenantId, String taskHandle) {
+        int dot = taskHandle.lastIndexOf('.');
+        if (dot < 0) {
+            throw new DeleteTaskNotFoundException();
+        }
+        String taskId = taskHandle.substring(0, dot);
+        try {
+            byte[] signature = DECODER.decode(taskHandle.substring(dot + 1));
+            if (!MessageDigest.isEqual(signature, sign(tenantId, taskId))) {
+                throw new DeleteTaskNotFoundException();
+            }
+        } catch (IllegalArgumentException e) {
+            throw new DeleteTaskNotFoundException();
+        }
+        return taskId;
+    }
+
+    private byte[] sign(String tenantId, String taskId) {
+        try {
+            // Mac instances are not thread-safe
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(key);
+            return mac.doFinal((tenantId + "\n" + taskId).getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+
+    // Helper classes
+
+    @lombok.Data
+    @lombok.Builder
+    public static class DeleteTask {
+        private String taskId;
+        private boolean completed;
+        private boolean cancelled;
+        private long total;
+        private long deleted;
+        // Documents changed while the task ran, left in place
+        private long versionConflicts;
+        private long batches;
+        private int failures;
+        private String error;
+        private double requestsPerSecond;
+        private long runningTimeMs;
+    }
+
+    public static class DeleteTaskNotFoundException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public DeleteTaskNotFoundException() {
+            super("Delete task not found");
+        }
+    }
+}
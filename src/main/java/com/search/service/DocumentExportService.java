@@ -0,0 +1,145 @@
+package com.search.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Export of a tenant's documents as NDJSON
+ *
+ * Pages through a point-in-time snapshot with search_after and writes each
+ * page to the output as soon as it arrives. Only one page is held in memory;
+ * a slow client blocks the writer, which holds back the next page request.
+ * Lines use the same shape as POST /documents/stream, so an export can be
+ * re-imported as is.
+ */
+@Slf4j
+@Service
+public class DocumentExportService {
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final TenantIndexRegistry indexRegistry;
+    private final PointInTimeRegistry pitRegistry;
+    private final ObjectMapper objectMapper;
+    private final SearchMetrics searchMetrics;
+    private final int pageSize;
+
+    public DocumentExportService(
+            ElasticsearchClient elasticsearchClient,
+            TenantIndexRegistry indexRegistry,
+            PointInTimeRegistry pitRegistry,
+            ObjectMapper objectMapper,
+            SearchMetrics searchMetrics,
+            @Value("${search.export.page-size:1000}") int pageSize) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.indexRegistry = indexRegistry;
+        this.pitRegistry = pitRegistry;
+        this.objectMapper = objectMapper;
+        this.searchMetrics = searchMetrics;
+        this.pageSize = pageSize;
+    }
+
+    public boolean hasDocuments(String tenantId) throws IOException {
+        return indexRegistry.indexExists(tenantId);
+    }
+
+    /**
+     * Write every document of the tenant to the stream, one JSON object per line
+     *
+     * @return number of documents written
+     * @throws IOException if the client goes away or the cluster call fails
+     */
+    public long export(String tenantId, OutputStream out) throws IOException {
+        long startTime = System.nanoTime();
+        long exported = 0;
+        String pitId = pitRegistry.open(tenantId, TenantIndexRegistry.targetName(tenantId));
+
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            // Lines are separated by the explicit newline only
+            generator.setRootValueSeparator(null);
+            List<FieldValue> searchAfter = null;
+            while (true) {
+                SearchResponse<ObjectNode> page = fetchPage(pitId, searchAfter);
+                String latestPitId = page.pitId() != null ? page.pitId() : pitId;
+                pitRegistry.touch(tenantId, pitId, latestPitId);
+                pitId = latestPitId;
+
+                List<Hit<ObjectNode>> hits = page.hits().hits();
+                for (Hit<ObjectNode> hit : hits) {
+                    writeLine(generator, hit);
+                }
+                // Hand the page to the client before asking for the next one
+                generator.flush();
+                exported += hits.size();
+
+                if (hits.size() < pageSize) {
+                    break;
+                }
+                searchAfter = hits.get(hits.size() - 1).sort();
+            }
+
+            searchMetrics.record(SearchMetrics.Operation.EXPORT, tenantId, SearchMetrics.SUCCESS, startTime);
+            log.info("Exported {} documents for tenant {} in {}ms",
+                    exported, tenantId, (System.nanoTime() - startTime) / 1_000_000);
+            return exported;
+
+        } catch (IOException | ElasticsearchException e) {
+            searchMetrics.record(SearchMetrics.Operation.EXPORT, tenantId, SearchMetrics.ERROR, startTime);
+            log.warn("Export for tenant {} stopped after {} documents: {}", tenantId, exported, e.getMessage());
+            throw e instanceof IOException io ? io : new IOException("Export failed", e);
+        } finally {
+            pitRegistry.close(tenantId, pitId);
+        }
+    }
+
+    private SearchResponse<ObjectNode> fetchPage(String pitId, List<FieldValue> searchAfter) throws IOException {
+        return elasticsearchClient.search(s -> {
+            s.pit(p -> p.id(pitId).keepAlive(pitRegistry.keepAlive()))
+                .query(q -> q.matchAll(m -> m))
+                .size(pageSize)
+                // Index order: cheapest sort, and unique per hit within the PIT
+                .sort(so -> so.field(f -> f.field("_shard_doc").order(SortOrder.Asc)))
+                .trackTotalHits(t -> t.enabled(false));
+            if (searchAfter != null) {
+                s.searchAfter(searchAfter);
+            }
+            return s;
+        }, ObjectNode.class);
+    }
+
+    private static void writeLine(JsonGenerator generator, Hit<ObjectNode> hit) throws IOException {
+        ObjectNode source = hit.source();
+        generator.writeStartObject();
+        // _id carries a tenant prefix in shared indices; doc_id is the client's id
+        JsonNode docId = source != null ? source.get("doc_id") : null;
+        generator.writeStringField("docId", docId != null && docId.isTextual() ? docId.asText() : hit.id());
+        if (source != null) {
+            writeField(generator, "content", source.get("content"));
+            writeField(generator, "metadata", source.get("metadata"));
+            writeField(generator, "timestamp", source.get("timestamp"));
+        }
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private static void writeField(JsonGenerator generator, String name, JsonNode value) throws IOException {
+        if (value != null && !value.isNull()) {
+            generator.writeFieldName(name);
+            generator.writeTree(value);
+        }
+    }
+}
@@ -1,25 +1,45 @@
 package com.search.service;
 
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
 import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.Result;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
 import co.elastic.clients.elasticsearch._types.query_dsl.Query;
 import co.elastic.clients.elasticsearch.core.*;
+import co.elastic.clients.elasticsearch.core.msearch.MultiSearchResponseItem;
+import co.elastic.clients.elasticsearch.core.msearch.RequestItem;
+import co.elastic.clients.elasticsearch.core.mget.MultiGetResponseItem;
+import co.elastic.clients.elasticsearch.core.search.Highlight;
+import co.elastic.clients.elasticsearch.core.search.HighlighterEncoder;
 import co.elastic.clients.elasticsearch.core.search.Hit;
-import co.elastic.clients.elasticsearch.indices.CreateIndexRequest;
-import co.elastic.clients.elasticsearch.indices.ExistsRequest;
+import co.elastic.clients.elasticsearch.core.search.ResponseBody;
 import co.elastic.clients.elasticsearch.indices.GetIndexRequest;
+import co.elastic.clients.json.JsonData;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.search.model.FacetRequest;
 import com.search.model.SearchDocument;
+import com.search.model.SearchFilters;
 import com.search.model.SearchResult;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
 /**
@@ -28,7 +48,7 @@ import java.util.stream.Collectors;
  * Features:
  * - Distributed storage with Elasticsearch
  * - Automatic sharding and replication
- * - Multi-tenant with separate indices
+ * - Multi-tenant with dedicated or shared indices
  * - Full-text search with BM25 scoring
  * - Horizontal scalability
  */
@@ -38,256 +58,999 @@ import java.util.stream.Collectors;
 public class ElasticsearchSearchService {
     
     private final ElasticsearchClient elasticsearchClient;
+    private final ElasticsearchAsyncClient elasticsearchAsyncClient;
+    private final TenantIndexRegistry indexRegistry;
+    private final SearchResultCache resultCache;
+    private final WriteBehindIndexer writeBehindIndexer;
+    private final BulkIndexer bulkIndexer;
+    private final SearchMicroBatcher microBatcher;
+    private final SearchMetrics searchMetrics;
+    private final PointInTimeRegistry pitRegistry;
+    private final SearchCursorCodec cursorCodec;
+    private final RefreshManager refreshManager;
+    private final SearchCoalescer searchCoalescer;
+    private final DocumentCache documentCache;
+    private final BlockingCallExecutor blockingCalls;
+    private final RolloverManager rolloverManager;
     
-    // Metrics
-    private final AtomicLong totalQueries = new AtomicLong(0);
-    private final AtomicLong totalDocuments = new AtomicLong(0);
-    private final AtomicLong totalQueryTimeMs = new AtomicLong(0);
+    /**
+     * Fields returned when the caller doesn't choose; doc id, score and snippet always come back
+     */
+    public static final List<String> DEFAULT_FIELDS = List.of("metadata");
+    private static final List<String> SELECTABLE_FIELDS = List.of("content", "metadata", "timestamp");
+    
+    // Snippets come from highlighting, so content is only fetched when asked for
+    @Value("${search.highlight.fragment-size:200}")
+    private int fragmentSize;
+    
+    @Value("${search.highlight.fragments:1}")
+    private int fragments;
+    
+    @Value("${search.highlight.max-analyzed-offset:1000000}")
+    private int maxAnalyzedOffset;
+    
+    @Value("${search.highlight.pre-tag:<em>}")
+    private String preTag;
+    
+    @Value("${search.highlight.post-tag:</em>}")
+    private String postTag;
     
     /**
-     * Default index settings: 5 shards, 2 replicas for fault tolerance
+     * Name the tenant's documents are addressed by
      */
-    private static final int DEFAULT_SHARDS = 5;
-    private static final int DEFAULT_REPLICAS = 2;
+    public String indexName(String tenantId) {
+        return TenantIndexRegistry.targetName(tenantId);
+    }
     
     /**
-     * Ensure index exists for a tenant, create if not
+     * Consistency token covering every write of the tenant this instance has acknowledged
      */
-    private void ensureIndexExists(String tenantId) throws IOException {
-        String indexName = SearchDocument.getIndexName(tenantId);
-        
-        ExistsRequest existsRequest = ExistsRequest.of(e -> e.index(indexName));
-        boolean exists = elasticsearchClient.indices().exists(existsRequest).value();
-        
-        if (!exists) {
-            log.info("Creating index for tenant: {}", tenantId);
-            
-            CreateIndexRequest createRequest = CreateIndexRequest.of(c -> c
-                .index(indexName)
-                .settings(s -> s
-                    .numberOfShards(String.valueOf(DEFAULT_SHARDS))
-                    .numberOfReplicas(String.valueOf(DEFAULT_REPLICAS))
-                    .refreshInterval(t -> t.time("1s")) // Refresh every second
-                )
-                .mappings(m -> m
-                    .properties("content", p -> p.text(t -> t.analyzer("standard")))
-                    .properties("doc_id", p -> p.keyword(k -> k))
-                    .properties("tenant_id", p -> p.keyword(k -> k))
-                    .properties("timestamp", p -> p.date(d -> d))
-                    .properties("metadata", p -> p.object(o -> o.enabled(true)))
-                )
-            );
-            
-            elasticsearchClient.indices().create(createRequest);
-            log.info("Index created successfully: {}", indexName);
+    public String consistencyToken(String tenantId) {
+        return refreshManager.token(tenantId);
+    }
+    
+    /**
+     * Complete once the writes covered by a consistency token are visible to search
+     *
+     * With ENQUEUE write-behind a write is acknowledged before it is flushed,
+     * and the token it got predates the flush. The tenant's buffer is then
+     * flushed first and everything written up to now awaited instead. Only
+     * this instance's buffer can be flushed; a token from another instance
+     * covers that instance's flushed writes.
+     *
+     * @param token token returned by a write, or null to not wait
+     */
+    public CompletableFuture<Void> awaitConsistency(String tenantId, String token) {
+        if (token == null || token.isEmpty() || !writeBehindIndexer.acknowledgesBeforeFlush()) {
+            return refreshManager.awaitVisible(tenantId, token);
         }
+        return blockingCalls.supplyAsync(() -> {
+                writeBehindIndexer.flushTenant(tenantId);
+                return refreshManager.token(tenantId);
+            })
+            .thenCompose(flushed -> refreshManager.awaitVisible(tenantId, 
+                RefreshManager.laterToken(token, flushed)));
     }
     
     /**
      * Index a single document
      */
     public String indexDocument(SearchDocument document) {
+        if (writeBehindIndexer.isEnabled()) {
+            return indexDocumentWriteBehind(document);
+        }
+        
+        long startTime = System.nanoTime();
         try {
-            ensureIndexExists(document.getTenantId());
-            
-            String indexName = SearchDocument.getIndexName(document.getTenantId());
+            TenantIndexRegistry.TenantPlacement placement = indexRegistry.ensurePlacement(document.getTenantId());
+            String indexName = placement.target();
             
             IndexRequest<SearchDocument> request = IndexRequest.of(i -> i
                 .index(indexName)
-                .id(document.getDocId())
+                .id(placement.documentId(document.getDocId()))
+                .routing(placement.routing())
                 .document(document)
-                .refresh(co.elastic.clients.elasticsearch._types.Refresh.WaitFor) // Wait for refresh
+                .refresh(refreshManager.writeRefresh())
             );
             
             IndexResponse response = elasticsearchClient.index(request);
-            totalDocuments.incrementAndGet();
+            if (placement.rollover()) {
+                RolloverManager.WrittenCopies written = new RolloverManager.WrittenCopies();
+                written.add(document.getTenantId(), response.index(), document.getDocId());
+                rolloverManager.deleteOlderCopies(written, refreshManager.writeRefresh() != null);
+            }
+            refreshManager.recordWrite(document.getTenantId(), 1);
+            searchMetrics.documentsIndexed(1);
+            searchMetrics.record(SearchMetrics.Operation.INDEX, document.getTenantId(), SearchMetrics.SUCCESS, startTime);
+            resultCache.invalidateTenant(document.getTenantId());
+            documentCache.invalidate(document.getTenantId(), document.getDocId());
             
             log.debug("Indexed document {} in index {}", document.getDocId(), indexName);
-            return response.id();
+            return document.getDocId();
             
-        } catch (IOException | ElasticsearchException e) {
+        } catch (ElasticsearchException e) {
+            indexRegistry.handleIndexNotFound(document.getTenantId(), e);
+            searchMetrics.record(SearchMetrics.Operation.INDEX, document.getTenantId(), SearchMetrics.ERROR, startTime);
+            log.error("Error indexing document {}: {}", document.getDocId(), e.getMessage(), e);
+            throw new RuntimeException("Failed to index document", e);
+        } catch (IOException e) {
+            searchMetrics.record(SearchMetrics.Operation.INDEX, document.getTenantId(), SearchMetrics.ERROR, startTime);
             log.error("Error indexing document {}: {}", document.getDocId(), e.getMessage(), e);
             throw new RuntimeException("Failed to index document", e);
         }
     }
     
+    /**
+     * Index a single document without blocking the calling thread
+     */
+    public CompletableFuture<String> indexDocumentAsync(SearchDocument document) {
+        long startTime = System.nanoTime();
+        String tenantId = document.getTenantId();
+        
+        if (writeBehindIndexer.isEnabled()) {
+            return writeBehindIndexer.submit(document)
+                .whenComplete((id, error) -> {
+                    if (error == null) {
+                        searchMetrics.documentsIndexed(1);
+                    }
+                    searchMetrics.record(SearchMetrics.Operation.INDEX, tenantId,
+                        error == null ? SearchMetrics.SUCCESS : SearchMetrics.ERROR, startTime);
+                });
+        }
+        
+        String indexName = TenantIndexRegistry.targetName(tenantId);
+        
+        // Index creation is rare and stays blocking; only unknown tenants pay for it
+        TenantIndexRegistry.TenantPlacement known = indexRegistry.knownPlacement(tenantId);
+        CompletableFuture<TenantIndexRegistry.TenantPlacement> indexReady = known != null
+            ? CompletableFuture.completedFuture(known)
+            : blockingCalls.supplyAsync(() -> {
+                try {
+                    return indexRegistry.ensurePlacement(tenantId);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            });
+        
+        return indexReady
+            .thenCompose(placement -> elasticsearchAsyncClient.index(IndexRequest.of(i -> i
+                .index(placement.target())
+                .id(placement.documentId(document.getDocId()))
+                .routing(placement.routing())
+                .document(document)
+                .refresh(refreshManager.writeRefresh())
+            )).thenCompose(response -> !placement.rollover() ? CompletableFuture.completedFuture(response)
+                : rolloverManager.deleteOlderCopiesAsync(tenantId, response.index(), List.of(document.getDocId()),
+                        refreshManager.writeRefresh() != null)
+                    .handle((ignored, cleanupError) -> {
+                        // The write is acknowledged; the older copy stays until the id is written again
+                        if (cleanupError != null) {
+                            log.error("Deleting older copies of document {} failed: {}",
+                                document.getDocId(), cleanupError.getMessage(), cleanupError);
+                        }
+                        return response;
+                    })))
+            .handle((response, error) -> {
+                if (error != null) {
+                    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                    if (cause instanceof ElasticsearchException ee) {
+                        indexRegistry.handleIndexNotFound(tenantId, ee);
+                    }
+                    searchMetrics.record(SearchMetrics.Operation.INDEX, tenantId, SearchMetrics.ERROR, startTime);
+                    log.error("Error indexing document {}: {}", document.getDocId(), cause.getMessage(), cause);
+                    throw new CompletionException(new RuntimeException("Failed to index document", cause));
+                }
+                refreshManager.recordWrite(tenantId, 1);
+                searchMetrics.documentsIndexed(1);
+                searchMetrics.record(SearchMetrics.Operation.INDEX, tenantId, SearchMetrics.SUCCESS, startTime);
+                resultCache.invalidateTenant(tenantId);
+                documentCache.invalidate(tenantId, document.getDocId());
+                log.debug("Indexed document {} in index {}", document.getDocId(), indexName);
+                return document.getDocId();
+            });
+    }
+    
+    /**
+     * Hand a document to the write-behind buffers and wait for the configured durability
+     */
+    private String indexDocumentWriteBehind(SearchDocument document) {
+        long startTime = System.nanoTime();
+        try {
+            String id = writeBehindIndexer.submit(document).join();
+            searchMetrics.documentsIndexed(1);
+            searchMetrics.record(SearchMetrics.Operation.INDEX, document.getTenantId(), SearchMetrics.SUCCESS, startTime);
+            return id;
+        } catch (CompletionException e) {
+            searchMetrics.record(SearchMetrics.Operation.INDEX, document.getTenantId(), SearchMetrics.ERROR, startTime);
+            log.error("Error indexing document {}: {}", document.getDocId(), e.getCause().getMessage());
+            throw new RuntimeException("Failed to index document", e.getCause());
+        }
+    }
+    
     /**
      * Index multiple documents in bulk
      */
     public BulkIndexResult indexDocumentsBatch(List<SearchDocument> documents) {
         if (documents.isEmpty()) {
-            return new BulkIndexResult(0, 0, 0);
+            return new BulkIndexResult(0, 0, 0, new ArrayList<>());
         }
         
         long startTime = System.nanoTime();
-        int successCount = 0;
-        int failureCount = 0;
         
+        // Group documents by tenant
+        Map<String, List<SearchDocument>> docsByTenant = documents.stream()
+            .collect(Collectors.groupingBy(SearchDocument::getTenantId));
+        
+        Map<String, TenantIndexRegistry.TenantPlacement> placements = new HashMap<>();
         try {
-            // Group documents by tenant
-            Map<String, List<SearchDocument>> docsByTenant = documents.stream()
-                .collect(Collectors.groupingBy(SearchDocument::getTenantId));
-            
             // Ensure indices exist for all tenants
             for (String tenantId : docsByTenant.keySet()) {
-                ensureIndexExists(tenantId);
-            }
-            
-            // Build bulk request
-            BulkRequest.Builder bulkBuilder = new BulkRequest.Builder();
-            
-            for (SearchDocument doc : documents) {
-                String indexName = SearchDocument.getIndexName(doc.getTenantId());
-                bulkBuilder.operations(op -> op
-                    .index(idx -> idx
-                        .index(indexName)
-                        .id(doc.getDocId())
-                        .document(doc)
-                    )
-                );
+                placements.put(tenantId, indexRegistry.ensurePlacement(tenantId));
             }
-            
-            BulkRequest bulkRequest = bulkBuilder
-                .refresh(co.elastic.clients.elasticsearch._types.Refresh.WaitFor)
-                .build();
-            
-            BulkResponse response = elasticsearchClient.bulk(bulkRequest);
-            
-            // Count successes and failures
-            successCount = (int) response.items().stream()
-                .filter(item -> item.error()==null)
-                .count();
-            failureCount = response.items().size() - successCount;
-            
-            totalDocuments.addAndGet(successCount);
-            
-            double timeMs = (System.nanoTime() - startTime) / 1_000_000.0;
-            
-            log.info("Bulk indexed {} documents ({} success, {} failures) in {}ms",
-                    documents.size(), successCount, failureCount, timeMs);
-            
-            return new BulkIndexResult(successCount, failureCount, timeMs);
-            
         } catch (IOException | ElasticsearchException e) {
             log.error("Error in bulk indexing: {}", e.getMessage(), e);
-            return new BulkIndexResult(successCount, documents.size() - successCount, 
-                                      (System.nanoTime() - startTime) / 1_000_000.0);
+            List<ItemError> errors = documents.stream()
+                .map(doc -> new ItemError(doc.getDocId(), 0, "index_unavailable", e.getMessage()))
+                .collect(Collectors.toList());
+            docsByTenant.keySet().forEach(tenantId -> 
+                searchMetrics.record(SearchMetrics.Operation.BULK, tenantId, SearchMetrics.ERROR, startTime));
+            return new BulkIndexResult(0, documents.size(), 
+                                      (System.nanoTime() - startTime) / 1_000_000.0, errors);
         }
+        
+        // Split by size, send bulks in parallel and retry rejected items
+        RolloverManager.WrittenCopies written = new RolloverManager.WrittenCopies();
+        BulkIndexResult result = bulkIndexer.index(documents,
+            doc -> placements.get(doc.getTenantId()),
+            refreshManager.writeRefresh(),
+            (doc, index) -> {
+                if (placements.get(doc.getTenantId()).rollover()) {
+                    written.add(doc.getTenantId(), index, doc.getDocId());
+                }
+            });
+        rolloverManager.deleteOlderCopies(written, refreshManager.writeRefresh() != null);
+        
+        docsByTenant.forEach((tenantId, docs) -> refreshManager.recordWrite(tenantId, docs.size()));
+        searchMetrics.documentsIndexed(result.getSuccessCount());
+        docsByTenant.keySet().forEach(resultCache::invalidateTenant);
+        docsByTenant.keySet().forEach(documentCache::invalidateTenant);
+        
+        String outcome = result.getFailureCount() == 0 ? SearchMetrics.SUCCESS
+            : result.getSuccessCount() == 0 ? SearchMetrics.ERROR
+            : SearchMetrics.PARTIAL;
+        docsByTenant.keySet().forEach(tenantId -> 
+            searchMetrics.record(SearchMetrics.Operation.BULK, tenantId, outcome, startTime));
+        
+        log.info("Bulk indexed {} documents ({} success, {} failures) in {}ms",
+                documents.size(), result.getSuccessCount(), result.getFailureCount(), result.getTimeMs());
+        
+        return result;
     }
     
     /**
      * Search documents with full-text search
+     *
+     * @param fields fields to return per hit, as produced by {@link #canonicalFields}
+     * @param topK   hits to return; 0 for facet counts only, which Elasticsearch serves from its request cache
      */
-    public SearchResponse search(String tenantId, String queryText, int topK) {
+    public SearchResponse search(String tenantId, String queryText, int topK, List<String> fields,
+                                 SearchFilters filters, FacetRequest facets) {
         long startTime = System.nanoTime();
         
+        // Read the generation first so a write racing this query can't leave a stale entry behind
+        long generation = resultCache.generation(tenantId);
+        // Writes not yet refreshed would be missing from the result
+        boolean cacheable = refreshManager.isSettled(tenantId);
+        SearchResponse cached = fromCache(tenantId, generation, queryText, topK, fields, filters, facets, startTime);
+        if (cached != null) {
+            searchMetrics.record(SearchMetrics.Operation.SEARCH, tenantId, SearchMetrics.CACHED, startTime);
+            return cached;
+        }
+        
+        // An in-flight call may have started before the refresh that makes the latest writes visible
+        if (!cacheable) {
+            return searchCluster(tenantId, queryText, topK, fields, filters, facets, generation, false, startTime);
+        }
+        SearchResponse response = searchCoalescer.execute(tenantId, generation, queryText, topK, fields, filters, facets,
+            () -> searchCluster(tenantId, queryText, topK, fields, filters, facets, generation, true, startTime));
+        if (response.getStats().isCoalesced()) {
+            searchMetrics.record(SearchMetrics.Operation.SEARCH, tenantId, SearchMetrics.COALESCED, startTime);
+        }
+        return response;
+    }
+    
+    private SearchResponse searchCluster(String tenantId, String queryText, int topK, List<String> fields,
+                                         SearchFilters filters, FacetRequest facets, long generation,
+                                         boolean cacheable, long startTime) {
         try {
-            String indexName = SearchDocument.getIndexName(tenantId);
+            String indexName = TenantIndexRegistry.targetName(tenantId);
             
             // Check if index exists
-            ExistsRequest existsRequest = ExistsRequest.of(e -> e.index(indexName));
-            if (!elasticsearchClient.indices().exists(existsRequest).value()) {
+            long phaseStart = System.nanoTime();
+            boolean indexExists = indexRegistry.indexExists(tenantId);
+            searchMetrics.recordPhase(SearchMetrics.Operation.SEARCH, SearchMetrics.Phase.INDEX_CHECK, 
+                System.nanoTime() - phaseStart);
+            if (!indexExists) {
                 log.warn("Index does not exist for tenant: {}", tenantId);
-                return new SearchResponse(new ArrayList<>(), 
-                    new QueryStats(0, 0, 0, 0));
+                searchMetrics.record(SearchMetrics.Operation.SEARCH, tenantId, SearchMetrics.NOT_FOUND, startTime);
+                return emptySearchResponse(0);
             }
             
-            // Build search query - multi-match across content field
-            Query query = Query.of(q -> q
-                .match(m -> m
-                    .field("content")
-                    .query(queryText)
-                )
-            );
-            
-            // Execute search
-            co.elastic.clients.elasticsearch.core.SearchRequest searchRequest = 
-                co.elastic.clients.elasticsearch.core.SearchRequest.of(s -> s
-                    .index(indexName)
-                    .query(query)
-                    .size(topK)
-                );
+            phaseStart = System.nanoTime();
+            ResponseBody<SearchDocument> response = microBatcher.isEnabled()
+                ? awaitBatched(microBatcher.submit(buildRequestItem(indexName, queryText, topK, fields, filters, facets)))
+                : elasticsearchClient.search(
+                    buildSearchRequest(indexName, queryText, topK, fields, filters, facets), SearchDocument.class);
+            searchMetrics.recordClusterCall(SearchMetrics.Operation.SEARCH, response.took(), System.nanoTime() - phaseStart);
             
-            co.elastic.clients.elasticsearch.core.SearchResponse<SearchDocument> response = 
-                elasticsearchClient.search(searchRequest, SearchDocument.class);
+            SearchResponse searchResponse = 
+                toSearchResponse(SearchMetrics.Operation.SEARCH, tenantId, response, fields, startTime);
+            if (cacheable) {
+                resultCache.put(tenantId, generation, queryText, topK, fields, filters, facets, searchResponse);
+            }
+            searchMetrics.record(SearchMetrics.Operation.SEARCH, tenantId, SearchMetrics.SUCCESS, startTime);
+            return searchResponse;
             
-            // Convert hits to search results
-            List<SearchResult> results = response.hits().hits().stream()
-                .map(hit -> {
-                    SearchDocument doc = hit.source();
-                    double score = hit.score() != null ? hit.score() : 0.0;
-                    return SearchResult.fromDocument(doc, score);
-                })
-                .collect(Collectors.toList());
+        } catch (ElasticsearchException e) {
+            if (indexRegistry.handleIndexNotFound(tenantId, e)) {
+                searchMetrics.record(SearchMetrics.Operation.SEARCH, tenantId, SearchMetrics.NOT_FOUND, startTime);
+                return emptySearchResponse(0);
+            }
+            log.error("Error searching for tenant {}: {}", tenantId, e.getMessage(), e);
+            searchMetrics.record(SearchMetrics.Operation.SEARCH, tenantId, SearchMetrics.ERROR, startTime);
+            return emptySearchResponse((System.nanoTime() - startTime) / 1_000_000.0);
+        } catch (IOException e) {
+            log.error("Error searching for tenant {}: {}", tenantId, e.getMessage(), e);
+            searchMetrics.record(SearchMetrics.Operation.SEARCH, tenantId, SearchMetrics.ERROR, startTime);
+            return emptySearchResponse((System.nanoTime() - startTime) / 1_000_000.0);
+        }
+    }
+    
+    /**
+     * Search documents without blocking the calling thread
+     *
+     * Skips the index existence check: a missing index comes back as
+     * index_not_found, which is treated as an empty result.
+     */
+    public CompletableFuture<SearchResponse> searchAsync(String tenantId, String queryText, int topK, 
+                                                         List<String> fields, SearchFilters filters,
+                                                         FacetRequest facets) {
+        long startTime = System.nanoTime();
+        
+        long generation = resultCache.generation(tenantId);
+        boolean cacheable = refreshManager.isSettled(tenantId);
+        SearchResponse cached = fromCache(tenantId, generation, queryText, topK, fields, filters, facets, startTime);
+        if (cached != null) {
+            searchMetrics.record(SearchMetrics.Operation.SEARCH, tenantId, SearchMetrics.CACHED, startTime);
+            return CompletableFuture.completedFuture(cached);
+        }
+        
+        if (!cacheable) {
+            return searchClusterAsync(tenantId, queryText, topK, fields, filters, facets, generation, false, startTime);
+        }
+        return searchCoalescer.executeAsync(tenantId, generation, queryText, topK, fields, filters, facets,
+                () -> searchClusterAsync(tenantId, queryText, topK, fields, filters, facets, generation, true,
+                    startTime))
+            .thenApply(response -> {
+                if (response.getStats().isCoalesced()) {
+                    searchMetrics.record(SearchMetrics.Operation.SEARCH, tenantId, SearchMetrics.COALESCED, startTime);
+                }
+                return response;
+            });
+    }
+    
+    private CompletableFuture<SearchResponse> searchClusterAsync(String tenantId, String queryText, int topK,
+                                                                 List<String> fields, SearchFilters filters,
+                                                                 FacetRequest facets, long generation,
+                                                                 boolean cacheable, long startTime) {
+        String indexName = TenantIndexRegistry.targetName(tenantId);
+        long callStart = System.nanoTime();
+        CompletableFuture<? extends ResponseBody<SearchDocument>> future = microBatcher.isEnabled()
+            ? microBatcher.submit(buildRequestItem(indexName, queryText, topK, fields, filters, facets))
+            : elasticsearchAsyncClient.search(
+                buildSearchRequest(indexName, queryText, topK, fields, filters, facets), SearchDocument.class);
+        return future
+            .handle((response, error) -> {
+                if (error == null) {
+                    searchMetrics.recordClusterCall(SearchMetrics.Operation.SEARCH, response.took(), System.nanoTime() - callStart);
+                    SearchResponse searchResponse = 
+                        toSearchResponse(SearchMetrics.Operation.SEARCH, tenantId, response, fields, startTime);
+                    if (cacheable) {
+                        resultCache.put(tenantId, generation, queryText, topK, fields, filters, facets, searchResponse);
+                    }
+                    searchMetrics.record(SearchMetrics.Operation.SEARCH, tenantId, SearchMetrics.SUCCESS, startTime);
+                    return searchResponse;
+                }
+                
+                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                if (cause instanceof ElasticsearchException ee && indexRegistry.handleIndexNotFound(tenantId, ee)) {
+                    searchMetrics.record(SearchMetrics.Operation.SEARCH, tenantId, SearchMetrics.NOT_FOUND, startTime);
+                    return emptySearchResponse(0);
+                }
+                log.error("Error searching for tenant {}: {}", tenantId, cause.getMessage(), cause);
+                searchMetrics.record(SearchMetrics.Operation.SEARCH, tenantId, SearchMetrics.ERROR, startTime);
+                return emptySearchResponse((System.nanoTime() - startTime) / 1_000_000.0);
+            });
+    }
+    
+    private SearchResponse fromCache(String tenantId, long generation, String queryText, int topK,
+                                     List<String> fields, SearchFilters filters, FacetRequest facets,
+                                     long startTime) {
+        SearchResponse cached = resultCache.get(tenantId, generation, queryText, topK, fields, filters, facets);
+        if (cached == null) {
+            return null;
+        }
+        double queryTimeMs = (System.nanoTime() - startTime) / 1_000_000.0;
+        QueryStats stats = cached.getStats().toBuilder()
+            .queryTimeMs(queryTimeMs)
+            .cached(true)
+            .build();
+        return new SearchResponse(cached.getResults(), stats, cached.getFacets());
+    }
+    
+    /**
+     * Run several searches for one tenant as a single _msearch
+     *
+     * Responses are returned in query order; cached queries are not sent.
+     */
+    public List<SearchResponse> multiSearch(String tenantId, List<MultiSearchQuery> queries) {
+        long startTime = System.nanoTime();
+        long generation = resultCache.generation(tenantId);
+        boolean cacheable = refreshManager.isSettled(tenantId);
+        
+        List<SearchResponse> responses = new ArrayList<>(queries.size());
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < queries.size(); i++) {
+            MultiSearchQuery q = queries.get(i);
+            SearchResponse cached = fromCache(tenantId, generation, q.getQuery(), q.getTopK(), q.getFields(), 
+                q.getFilters(), FacetRequest.NONE, startTime);
+            responses.add(cached);
+            if (cached == null) {
+                pending.add(i);
+            }
+        }
+        if (pending.isEmpty()) {
+            searchMetrics.record(SearchMetrics.Operation.MULTI_SEARCH, tenantId, SearchMetrics.CACHED, startTime);
+            return responses;
+        }
+        
+        try {
+            String indexName = TenantIndexRegistry.targetName(tenantId);
             
-            double queryTimeMs = (System.nanoTime() - startTime) / 1_000_000.0;
-            totalQueries.incrementAndGet();
-            totalQueryTimeMs.addAndGet((long) queryTimeMs);
+            long phaseStart = System.nanoTime();
+            boolean indexExists = indexRegistry.indexExists(tenantId);
+            searchMetrics.recordPhase(SearchMetrics.Operation.MULTI_SEARCH, SearchMetrics.Phase.INDEX_CHECK, 
+                System.nanoTime() - phaseStart);
+            if (!indexExists) {
+                log.warn("Index does not exist for tenant: {}", tenantId);
+                pending.forEach(i -> responses.set(i, emptySearchResponse(0)));
+                searchMetrics.record(SearchMetrics.Operation.MULTI_SEARCH, tenantId, SearchMetrics.NOT_FOUND, startTime);
+                return responses;
+            }
             
-            // Get shard info
-            int shardsQueried = response.shards().successful().intValue();
+            MsearchRequest.Builder requestBuilder = new MsearchRequest.Builder();
+            for (int i : pending) {
+                MultiSearchQuery q = queries.get(i);
+                requestBuilder.searches(
+                    buildRequestItem(indexName, q.getQuery(), q.getTopK(), q.getFields(), q.getFilters(),
+                        FacetRequest.NONE));
+            }
             
-            QueryStats stats = new QueryStats(
-                queryTimeMs,
-                results.size(),
-                shardsQueried,
-                results.size()
-            );
+            phaseStart = System.nanoTime();
+            MsearchResponse<SearchDocument> response = 
+                elasticsearchClient.msearch(requestBuilder.build(), SearchDocument.class);
+            searchMetrics.recordClusterCall(SearchMetrics.Operation.MULTI_SEARCH, response.took(), System.nanoTime() - phaseStart);
             
-            log.debug("Search completed for tenant {} in {}ms, found {} results",
-                     tenantId, queryTimeMs, results.size());
+            boolean failures = false;            
+            // Responses come back in request order
+            for (int j = 0; j < pending.size(); j++) {
+                int i = pending.get(j);
+                MultiSearchQuery q = queries.get(i);
+                MultiSearchResponseItem<SearchDocument> item = response.responses().get(j);
+                if (item.isResult()) {
+                    SearchResponse searchResponse = toSearchResponse(
+                        SearchMetrics.Operation.MULTI_SEARCH, tenantId, item.result(), q.getFields(), startTime);
+                    if (cacheable) {
+                        resultCache.put(tenantId, generation, q.getQuery(), q.getTopK(), q.getFields(), 
+                            q.getFilters(), FacetRequest.NONE, searchResponse);
+                    }
+                    responses.set(i, searchResponse);
+                } else {
+                    log.error("Error in multi-search item for tenant {}: {}", tenantId, item.failure().error().reason());
+                    responses.set(i, emptySearchResponse((System.nanoTime() - startTime) / 1_000_000.0));
+                    failures = true;
+                }
+            }
+            searchMetrics.record(SearchMetrics.Operation.MULTI_SEARCH, tenantId, 
+                failures ? SearchMetrics.PARTIAL : SearchMetrics.SUCCESS, startTime);
+            return responses;
             
-            return new SearchResponse(results, stats);
+        } catch (IOException | ElasticsearchException e) {
+            boolean indexMissing = e instanceof ElasticsearchException ee 
+                && indexRegistry.handleIndexNotFound(tenantId, ee);
+            if (!indexMissing) {
+                log.error("Error in multi-search for tenant {}: {}", tenantId, e.getMessage(), e);
+            }
+            double queryTimeMs = indexMissing ? 0 : (System.nanoTime() - startTime) / 1_000_000.0;
+            pending.forEach(i -> responses.set(i, emptySearchResponse(queryTimeMs)));
+            searchMetrics.record(SearchMetrics.Operation.MULTI_SEARCH, tenantId, 
+                indexMissing ? SearchMetrics.NOT_FOUND : SearchMetrics.ERROR, startTime);
+            return responses;
+        }
+    }
+    
+    /**
+     * First page of a cursor-paginated search
+     *
+     * Pages are read from a point-in-time snapshot with search_after, so
+     * page 50 costs about the same as page 1.
+     */
+    public SearchPage searchPage(String tenantId, String queryText, int size, List<String> fields,
+                                 SearchFilters filters) {
+        long startTime = System.nanoTime();
+        try {
+            if (!indexRegistry.indexExists(tenantId)) {
+                searchMetrics.record(SearchMetrics.Operation.SEARCH_PAGE, tenantId, SearchMetrics.NOT_FOUND, startTime);
+                SearchResponse empty = emptySearchResponse(0);
+                return new SearchPage(empty.getResults(), empty.getStats(), null);
+            }
+            String pitId = pitRegistry.open(tenantId, TenantIndexRegistry.targetName(tenantId));
+            return fetchPage(
+                new SearchCursorCodec.Cursor(tenantId, pitId, queryText, size, fields, filters, null), startTime);
             
         } catch (IOException | ElasticsearchException e) {
-            log.error("Error searching for tenant {}: {}", tenantId, e.getMessage(), e);
-            double queryTimeMs = (System.nanoTime() - startTime) / 1_000_000.0;
-            return new SearchResponse(new ArrayList<>(), 
-                new QueryStats(queryTimeMs, 0, 0, 0));
+            searchMetrics.record(SearchMetrics.Operation.SEARCH_PAGE, tenantId, SearchMetrics.ERROR, startTime);
+            log.error("Error opening search cursor for tenant {}: {}", tenantId, e.getMessage(), e);
+            throw new RuntimeException("Failed to search", e);
+        }
+    }
+    
+    /**
+     * Page following the one that returned this cursor
+     *
+     * @throws SearchCursorCodec.InvalidCursorException if the cursor doesn't verify
+     * @throws CursorExpiredException if its point in time has been closed
+     */
+    public SearchPage nextPage(String tenantId, String cursorToken) {
+        long startTime = System.nanoTime();
+        SearchCursorCodec.Cursor cursor = cursorCodec.decode(cursorToken, tenantId);
+        try {
+            return fetchPage(cursor, startTime);
+            
+        } catch (ElasticsearchException e) {
+            if (PointInTimeRegistry.isContextMissing(e)) {
+                pitRegistry.forget(tenantId, cursor.pitId());
+                searchMetrics.record(SearchMetrics.Operation.SEARCH_PAGE, tenantId, SearchMetrics.NOT_FOUND, startTime);
+                throw new CursorExpiredException();
+            }
+            searchMetrics.record(SearchMetrics.Operation.SEARCH_PAGE, tenantId, SearchMetrics.ERROR, startTime);
+            log.error("Error fetching page for tenant {}: {}", tenantId, e.getMessage(), e);
+            throw new RuntimeException("Failed to search", e);
+        } catch (IOException e) {
+            searchMetrics.record(SearchMetrics.Operation.SEARCH_PAGE, tenantId, SearchMetrics.ERROR, startTime);
+            log.error("Error fetching page for tenant {}: {}", tenantId, e.getMessage(), e);
+            throw new RuntimeException("Failed to search", e);
+        }
+    }
+    
+    private SearchPage fetchPage(SearchCursorCodec.Cursor cursor, long startTime) throws IOException {
+        String tenantId = cursor.tenantId();
+        List<String> fields = cursor.fields();
+        
+        long phaseStart = System.nanoTime();
+        co.elastic.clients.elasticsearch.core.SearchResponse<SearchDocument> response = elasticsearchClient.search(s -> {
+            s.pit(p -> p.id(cursor.pitId()).keepAlive(pitRegistry.keepAlive()))
+                .query(buildQuery(cursor.query(), cursor.filters()))
+                .size(cursor.size())
+                // _shard_doc breaks score ties so every hit has a unique position
+                .sort(so -> so.score(sc -> sc.order(SortOrder.Desc)))
+                .sort(so -> so.field(f -> f.field("_shard_doc").order(SortOrder.Asc)))
+                .trackTotalHits(t -> t.enabled(false))
+                .source(src -> src.filter(f -> f.includes(sourceIncludes(fields))))
+                .highlight(buildHighlight());
+            if (cursor.searchAfter() != null) {
+                s.searchAfter(SearchCursorCodec.toFieldValues(cursor.searchAfter()));
+            }
+            return s;
+        }, SearchDocument.class);
+        searchMetrics.recordClusterCall(SearchMetrics.Operation.SEARCH_PAGE, response.took(), System.nanoTime() - phaseStart);
+        
+        SearchResponse page = toSearchResponse(SearchMetrics.Operation.SEARCH_PAGE, tenantId, response, fields, startTime);
+        List<Hit<SearchDocument>> hits = response.hits().hits();
+        String latestPitId = response.pitId() != null ? response.pitId() : cursor.pitId();
+        
+        String nextCursor = null;
+        if (hits.size() < cursor.size()) {
+            // Last page: free the snapshot now rather than at keep-alive expiry
+            pitRegistry.close(tenantId, latestPitId);
+        } else {
+            pitRegistry.touch(tenantId, cursor.pitId(), latestPitId);
+            List<FieldValue> lastSort = hits.get(hits.size() - 1).sort();
+            nextCursor = cursorCodec.encode(new SearchCursorCodec.Cursor(tenantId, latestPitId, 
+                cursor.query(), cursor.size(), fields, cursor.filters(), SearchCursorCodec.toJson(lastSort)));
+        }
+        
+        searchMetrics.record(SearchMetrics.Operation.SEARCH_PAGE, tenantId, SearchMetrics.SUCCESS, startTime);
+        return new SearchPage(page.getResults(), page.getStats(), nextCursor);
+    }
+    
+    // Build search query - multi-match across content field
+    private static Query buildQuery(String queryText, SearchFilters filters) {
+        Query match = Query.of(q -> q
+            .match(m -> m
+                .field("content")
+                .query(queryText)
+            )
+        );
+        if (filters == null || filters.isEmpty()) {
+            return match;
+        }
+        
+        // Filter context: not scored, cached per segment by the node query cache,
+        // and lets the can_match phase skip shards
+        return Query.of(q -> q
+            .bool(b -> b
+                .must(match)
+                .filter(filterClauses(filters))
+            )
+        );
+    }
+    
+    /**
+     * Filters alone, for requests that select documents rather than rank them
+     */
+    static Query filterQuery(SearchFilters filters) {
+        return Query.of(q -> q.bool(b -> b.filter(filterClauses(filters))));
+    }
+    
+    private static List<Query> filterClauses(SearchFilters filters) {
+        List<Query> clauses = new ArrayList<>();
+        if (filters.hasTimeRange()) {
+            clauses.add(Query.of(f -> f.range(r -> {
+                r.field("timestamp");
+                if (filters.since() != null) {
+                    r.gte(JsonData.of(filters.since().toString()));
+                }
+                if (filters.until() != null) {
+                    r.lte(JsonData.of(filters.until().toString()));
+                }
+                return r;
+            })));
+        }
+        filters.metadata().forEach((key, values) -> clauses.add(Query.of(f -> f
+            .terms(t -> t
+                .field("metadata." + key)
+                .terms(v -> v.value(values.stream().map(FieldValue::of).toList()))
+            )
+        )));
+        return clauses;
+    }
+    
+    /**
+     * One terms aggregation per requested metadata key, named after the key
+     */
+    private static Map<String, Aggregation> buildFacets(FacetRequest facets) {
+        Map<String, Aggregation> aggregations = new LinkedHashMap<>();
+        for (String key : facets.keys()) {
+            aggregations.put(key, Aggregation.of(a -> a
+                .terms(t -> t.field("metadata." + key).size(facets.size()))
+            ));
+        }
+        return aggregations;
+    }
+    
+    private co.elastic.clients.elasticsearch.core.SearchRequest buildSearchRequest(
+            String indexName, String queryText, int topK, List<String> fields, SearchFilters filters,
+            FacetRequest facets) {
+        return co.elastic.clients.elasticsearch.core.SearchRequest.of(s -> {
+            s.index(indexName)
+                .query(buildQuery(queryText, filters))
+                .size(topK)
+                .aggregations(buildFacets(facets));
+            if (topK > 0) {
+                s.source(src -> src.filter(f -> f.includes(sourceIncludes(fields))))
+                    .highlight(buildHighlight());
+            } else {
+                // Count-only: shard results are cached until the next refresh
+                s.requestCache(true);
+            }
+            if (filters != null && filters.hasTimeRange()) {
+                // Run can_match even on few shards so indices outside the range are skipped
+                s.preFilterShardSize(1L);
+            }
+            return s;
+        });
+    }
+    
+    private RequestItem buildRequestItem(String indexName, String queryText, int topK, List<String> fields,
+                                         SearchFilters filters, FacetRequest facets) {
+        return RequestItem.of(r -> r
+            .header(h -> {
+                h.index(indexName);
+                if (topK == 0) {
+                    h.requestCache(true);
+                }
+                return h;
+            })
+            .body(b -> {
+                b.query(buildQuery(queryText, filters))
+                    .size(topK)
+                    .aggregations(buildFacets(facets));
+                if (topK > 0) {
+                    b.source(src -> src.filter(f -> f.includes(sourceIncludes(fields))))
+                        .highlight(buildHighlight());
+                }
+                return b;
+            })
+        );
+    }
+    
+    /**
+     * Query-relevant snippets from content; no_match_size falls back to its start
+     */
+    private Highlight buildHighlight() {
+        return Highlight.of(h -> h
+            .fields("content", f -> f
+                .fragmentSize(fragmentSize)
+                .numberOfFragments(fragments)
+                .noMatchSize(fragmentSize)
+            )
+            .preTags(preTag)
+            .postTags(postTag)
+            // Fragments carry markup, so the content around it must be escaped
+            .encoder(HighlighterEncoder.Html)
+            .maxAnalyzedOffset(maxAnalyzedOffset)
+        );
+    }
+    
+    private static List<String> sourceIncludes(List<String> fields) {
+        List<String> includes = new ArrayList<>(fields.size() + 2);
+        includes.add("doc_id");
+        includes.add("tenant_id");
+        includes.addAll(fields);
+        return includes;
+    }
+    
+    public static boolean isSelectableField(String field) {
+        return SELECTABLE_FIELDS.contains(field) 
+            || (field.startsWith("metadata.") && field.length() > "metadata.".length());
+    }
+    
+    /**
+     * Sorted, distinct field list, so equal selections share cache entries
+     *
+     * @return DEFAULT_FIELDS if fields is null
+     */
+    public static List<String> canonicalFields(List<String> fields) {
+        if (fields == null) {
+            return DEFAULT_FIELDS;
+        }
+        return fields.stream()
+            .filter(Objects::nonNull)
+            .map(String::trim)
+            .filter(f -> !f.isEmpty())
+            .distinct()
+            .sorted()
+            .toList();
+    }
+    
+    /**
+     * Wait for a micro-batched search, surfacing item failures as the blocking client would
+     */
+    private static ResponseBody<SearchDocument> awaitBatched(
+            CompletableFuture<ResponseBody<SearchDocument>> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof ElasticsearchException ee) {
+                throw ee;
+            }
+            throw new IOException("Micro-batched search failed", e.getCause());
         }
     }
     
+    private SearchResponse toSearchResponse(SearchMetrics.Operation operation,
+                                            String tenantId,
+                                            ResponseBody<SearchDocument> response,
+                                            List<String> fields,
+                                            long startTime) {
+        long mappingStart = System.nanoTime();
+        
+        // Convert hits to search results
+        List<SearchResult> results = response.hits().hits().stream()
+            .map(hit -> {
+                SearchDocument doc = hit.source();
+                double score = hit.score() != null ? hit.score() : 0.0;
+                String docId = doc != null && doc.getDocId() != null ? doc.getDocId() : hit.id();
+                return SearchResult.fromHit(docId, doc, score, hit.highlight().get("content"), fields);
+            })
+            .collect(Collectors.toList());
+        
+        double queryTimeMs = (System.nanoTime() - startTime) / 1_000_000.0;
+        
+        // Get shard info
+        int shardsQueried = response.shards().successful().intValue();
+        
+        QueryStats stats = new QueryStats(
+            queryTimeMs,
+            results.size(),
+            shardsQueried,
+            results.size(),
+            false,
+            false
+        );
+        
+        log.debug("Search completed for tenant {} in {}ms, found {} results",
+                 tenantId, queryTimeMs, results.size());
+        
+        searchMetrics.recordPhase(operation, SearchMetrics.Phase.MAPPING, System.nanoTime() - mappingStart);
+        return new SearchResponse(results, stats, toFacets(response.aggregations()));
+    }
+    
+    /**
+     * Buckets of each facet's terms aggregation, most frequent value first
+     *
+     * A key no index has mapped yet comes back as unmapped terms, with no buckets.
+     */
+    private static Map<String, List<FacetBucket>> toFacets(Map<String, Aggregate> aggregations) {
+        if (aggregations.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, List<FacetBucket>> facets = new LinkedHashMap<>();
+        aggregations.forEach((key, aggregate) -> {
+            List<FacetBucket> buckets = new ArrayList<>();
+            if (aggregate.isSterms()) {
+                aggregate.sterms().buckets().array()
+                    .forEach(b -> buckets.add(new FacetBucket(b.key()._get(), b.docCount())));
+            } else if (aggregate.isLterms()) {
+                aggregate.lterms().buckets().array()
+                    .forEach(b -> buckets.add(new FacetBucket(b.key(), b.docCount())));
+            } else if (aggregate.isDterms()) {
+                aggregate.dterms().buckets().array()
+                    .forEach(b -> buckets.add(new FacetBucket(b.key(), b.docCount())));
+            }
+            facets.put(key, buckets);
+        });
+        return facets;
+    }
+    
+    private static SearchResponse emptySearchResponse(double queryTimeMs) {
+        return new SearchResponse(new ArrayList<>(), 
+            new QueryStats(queryTimeMs, 0, 0, 0, false, false));
+    }
+    
     /**
      * Delete a document
+     *
+     * @return false if the tenant has no document with this id
+     * @throws RuntimeException if the delete failed
      */
     public boolean deleteDocument(String tenantId, String docId) {
+        long startTime = System.nanoTime();
         try {
-            String indexName = SearchDocument.getIndexName(tenantId);
+            String indexName = TenantIndexRegistry.targetName(tenantId);
             
-            DeleteRequest request = DeleteRequest.of(d -> d
-                .index(indexName)
-                .id(docId)
-                .refresh(co.elastic.clients.elasticsearch._types.Refresh.WaitFor)
-            );
+            TenantIndexRegistry.TenantPlacement placement = indexRegistry.placement(tenantId);
+            if (placement == null) {
+                searchMetrics.record(SearchMetrics.Operation.DELETE, tenantId, SearchMetrics.NOT_FOUND, startTime);
+                return false;
+            }
+            
+            // A buffered write of this id would otherwise land after the delete
+            writeBehindIndexer.flushTenant(tenantId);
+            
+            boolean deleted;
+            if (placement.rollover()) {
+                // A delete by id only reaches the write index; older copies live in the rest of the series
+                DeleteByQueryResponse response = rolloverManager.deleteAllCopies(
+                    tenantId, List.of(docId), refreshManager.writeRefresh() != null);
+                if (!response.failures().isEmpty()) {
+                    throw new IOException("Delete across " + indexName + " failed: "
+                        + response.failures().get(0).cause().reason());
+                }
+                deleted = response.deleted() != null && response.deleted() > 0;
+            } else {
+                deleted = deleteById(indexName, placement, docId);
+                TenantIndexRegistry.TenantPlacement promoted = deleted ? null : promotedPlacement(tenantId, placement);
+                if (promoted != null) {
+                    deleted = deleteById(indexName, promoted, docId);
+                }
+            }
             
-            DeleteResponse response = elasticsearchClient.delete(request);
+            if (!deleted) {
+                searchMetrics.record(SearchMetrics.Operation.DELETE, tenantId, SearchMetrics.NOT_FOUND, startTime);
+                return false;
+            }
+            refreshManager.recordWrite(tenantId, 1);
+            resultCache.invalidateTenant(tenantId);
+            documentCache.invalidate(tenantId, docId);
+            searchMetrics.record(SearchMetrics.Operation.DELETE, tenantId, SearchMetrics.SUCCESS, startTime);
             
             log.debug("Deleted document {} from index {}", docId, indexName);
             return true;
             
         } catch (IOException | ElasticsearchException e) {
+            if (e instanceof ElasticsearchException ee && indexRegistry.handleIndexNotFound(tenantId, ee)) {
+                searchMetrics.record(SearchMetrics.Operation.DELETE, tenantId, SearchMetrics.NOT_FOUND, startTime);
+                return false;
+            }
+            searchMetrics.record(SearchMetrics.Operation.DELETE, tenantId, SearchMetrics.ERROR, startTime);
             log.error("Error deleting document {}: {}", docId, e.getMessage(), e);
-            return false;
+            throw new RuntimeException("Failed to delete document", e);
+        }
+    }
+    private boolean deleteById(String indexName, TenantIndexRegistry.TenantPlacement placement, 
+                               String docId) throws IOException {
+        DeleteRequest request = DeleteRequest.of(d -> d
+            .index(indexName)
+            .id(placement.documentId(docId))
+            .refresh(refreshManager.writeRefresh())
+        );
+        return elasticsearchClient.delete(request).result() != Result.NotFound;
+    }
+    
+    /**
+     * Placement to retry an id that missed through a shared one, if the tenant has been promoted since
+     *
+     * Costs a lookup per miss, and only for shared tenants.
+     *
+     * @return null if the placement is still current
+     */
+    private TenantIndexRegistry.TenantPlacement promotedPlacement(String tenantId, 
+                                                                  TenantIndexRegistry.TenantPlacement placement) 
+            throws IOException {
+        if (!placement.shared()) {
+            return null;
         }
+        TenantIndexRegistry.TenantPlacement current = indexRegistry.reload(tenantId);
+        return current != null && !current.shared() ? current : null;
     }
+    
     /**
-     * Retrieve a document
+     * Retrieve a document, from the document cache if it was read recently
      */
     public SearchDocument retrieveDocument(String tenantId, String docId) {
+        long startTime = System.nanoTime();
+        SearchDocument cached = documentCache.get(tenantId, docId);
+        if (cached != null) {
+            searchMetrics.record(SearchMetrics.Operation.GET, tenantId, SearchMetrics.CACHED, startTime);
+            return cached;
+        }
+        
+        long readVersion = documentCache.readVersion();
         try {
-            String indexName = SearchDocument.getIndexName(tenantId);
-
-            GetRequest request = GetRequest.of(d -> d
-                    .index(indexName)
-                    .id(docId)
-                    .refresh(false)
-            );
+            String indexName = TenantIndexRegistry.targetName(tenantId);
+            
+            TenantIndexRegistry.TenantPlacement placement = indexRegistry.placement(tenantId);
+            if (placement == null) {
+                searchMetrics.record(SearchMetrics.Operation.GET, tenantId, SearchMetrics.NOT_FOUND, startTime);
+                return null;
+            }
+            if (placement.rollover()) {
+                // Unlike a GET, the ids search only sees refreshed writes
+                boolean cacheable = refreshManager.isSettled(tenantId);
+                SearchDocument document = searchById(indexName, docId);
+                if (cacheable) {
+                    documentCache.put(tenantId, docId, readVersion, document);
+                }
+                searchMetrics.record(SearchMetrics.Operation.GET, tenantId, 
+                    document != null ? SearchMetrics.SUCCESS : SearchMetrics.NOT_FOUND, startTime);
+                return document;
+            }
 
-            GetResponse<SearchDocument> response = elasticsearchClient.get(request, SearchDocument.class);
+            GetResponse<SearchDocument> response = getById(indexName, placement, docId);
+            TenantIndexRegistry.TenantPlacement promoted = response.found() ? null 
+                : promotedPlacement(tenantId, placement);
+            if (promoted != null) {
+                response = getById(indexName, promoted, docId);
+            }
 
             log.debug("Retrieved document {} from index {}", docId, indexName);
+            searchMetrics.record(SearchMetrics.Operation.GET, tenantId, 
+                response.found() ? SearchMetrics.SUCCESS : SearchMetrics.NOT_FOUND, startTime);
             if(response.found()) {
                 log.debug("Retrieved document {} from index {}", docId, indexName);
+                documentCache.put(tenantId, docId, readVersion, response.source());
                 return response.source();
             } else {
                 log.debug("No document found for {} in index {}", docId, indexName);
@@ -295,29 +1058,256 @@ public class ElasticsearchSearchService {
             }
 
         } catch (IOException | ElasticsearchException e) {
+            if (e instanceof ElasticsearchException ee && indexRegistry.handleIndexNotFound(tenantId, ee)) {
+                searchMetrics.record(SearchMetrics.Operation.GET, tenantId, SearchMetrics.NOT_FOUND, startTime);
+                return null;
+            }
             log.error("Error retrieving document {}: {}", docId, e.getMessage(), e);
+            searchMetrics.record(SearchMetrics.Operation.GET, tenantId, SearchMetrics.ERROR, startTime);
             return null;
         }
     }
 
+    private GetResponse<SearchDocument> getById(String indexName, TenantIndexRegistry.TenantPlacement placement, 
+                                                String docId) throws IOException {
+        return elasticsearchClient.get(GetRequest.of(d -> d
+                .index(indexName)
+                .id(placement.documentId(docId))
+                .refresh(false)
+        ), SearchDocument.class);
+    }
+    
+    /**
+     * Latest copy of a document across a rollover series, which a GET by id can't address
+     */
+    private SearchDocument searchById(String indexName, String docId) throws IOException {
+        return firstHit(elasticsearchClient.search(searchByIdRequest(indexName, docId), SearchDocument.class));
+    }
+    
+    private static co.elastic.clients.elasticsearch.core.SearchRequest searchByIdRequest(String indexName, 
+                                                                                        String docId) {
+        return co.elastic.clients.elasticsearch.core.SearchRequest.of(s -> s
+            .index(indexName)
+            .query(q -> q.ids(i -> i.values(docId)))
+            // Until a rewrite's older copy is deleted, the copy in the later index wins
+            .sort(so -> so.field(f -> f.field("_index").order(SortOrder.Desc)))
+            .size(1)
+        );
+    }
+    
+    private static SearchDocument firstHit(ResponseBody<SearchDocument> response) {
+        List<Hit<SearchDocument>> hits = response.hits().hits();
+        return hits.isEmpty() ? null : hits.get(0).source();
+    }
+    
+    /**
+     * Retrieve a document without blocking the calling thread
+     */
+    public CompletableFuture<SearchDocument> retrieveDocumentAsync(String tenantId, String docId) {
+        long startTime = System.nanoTime();
+        SearchDocument cached = documentCache.get(tenantId, docId);
+        if (cached != null) {
+            searchMetrics.record(SearchMetrics.Operation.GET, tenantId, SearchMetrics.CACHED, startTime);
+            return CompletableFuture.completedFuture(cached);
+        }
+        
+        String indexName = TenantIndexRegistry.targetName(tenantId);
+        long readVersion = documentCache.readVersion();
+        
+        // Rollover tenants are read with an ids search; an unknown tenant is looked up first
+        TenantIndexRegistry.TenantPlacement known = indexRegistry.knownPlacement(tenantId);
+        if (known != null && known.rollover()) {
+            boolean cacheable = refreshManager.isSettled(tenantId);
+            return elasticsearchAsyncClient.search(searchByIdRequest(indexName, docId), SearchDocument.class)
+                .handle((response, error) -> {
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                        log.error("Error retrieving document {}: {}", docId, cause.getMessage(), cause);
+                        searchMetrics.record(SearchMetrics.Operation.GET, tenantId, SearchMetrics.ERROR, startTime);
+                        return null;
+                    }
+                    SearchDocument document = firstHit(response);
+                    if (cacheable) {
+                        documentCache.put(tenantId, docId, readVersion, document);
+                    }
+                    searchMetrics.record(SearchMetrics.Operation.GET, tenantId, 
+                        document != null ? SearchMetrics.SUCCESS : SearchMetrics.NOT_FOUND, startTime);
+                    return document;
+                });
+        }
+        if (known == null) {
+            return blockingCalls.supplyAsync(() -> retrieveDocument(tenantId, docId));
+        }
+        
+        GetRequest request = GetRequest.of(d -> d
+                .index(indexName)
+                .id(known.documentId(docId))
+                .refresh(false)
+        );
+        
+        return elasticsearchAsyncClient.get(request, SearchDocument.class)
+            .handle((response, error) -> {
+                if (error != null) {
+                    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                    boolean indexMissing = cause instanceof ElasticsearchException ee 
+                        && indexRegistry.handleIndexNotFound(tenantId, ee);
+                    if (!indexMissing) {
+                        log.error("Error retrieving document {}: {}", docId, cause.getMessage(), cause);
+                    }
+                    searchMetrics.record(SearchMetrics.Operation.GET, tenantId, 
+                        indexMissing ? SearchMetrics.NOT_FOUND : SearchMetrics.ERROR, startTime);
+                    return CompletableFuture.<SearchDocument>completedFuture(null);
+                }
+                if (!response.found() && known.shared()) {
+                    // The tenant may have been promoted; the blocking path looks it up again
+                    indexRegistry.invalidate(tenantId);
+                    return blockingCalls.supplyAsync(() -> retrieveDocument(tenantId, docId));
+                }
+                searchMetrics.record(SearchMetrics.Operation.GET, tenantId, 
+                    response.found() ? SearchMetrics.SUCCESS : SearchMetrics.NOT_FOUND, startTime);
+                if (!response.found()) {
+                    return CompletableFuture.<SearchDocument>completedFuture(null);
+                }
+                documentCache.put(tenantId, docId, readVersion, response.source());
+                return CompletableFuture.completedFuture(response.source());
+            })
+            .thenCompose(document -> document);
+    }
+    
+    /**
+     * Retrieve several documents in one round trip
+     *
+     * Documents in the document cache are served locally; the rest are read
+     * with one _mget, or one ids search for a rollover tenant.
+     *
+     * @return documents in request order, null where an id was not found
+     */
+    public List<SearchDocument> retrieveDocuments(String tenantId, List<String> docIds) {
+        long startTime = System.nanoTime();
+        List<SearchDocument> documents = new ArrayList<>(docIds.size());
+        Set<String> uncached = new LinkedHashSet<>();
+        for (String docId : docIds) {
+            SearchDocument cached = documentCache.get(tenantId, docId);
+            documents.add(cached);
+            if (cached == null) {
+                uncached.add(docId);
+            }
+        }
+        if (uncached.isEmpty()) {
+            searchMetrics.record(SearchMetrics.Operation.MULTI_GET, tenantId, SearchMetrics.CACHED, startTime);
+            return documents;
+        }
+        
+        long readVersion = documentCache.readVersion();
+        try {
+            String indexName = TenantIndexRegistry.targetName(tenantId);
+            
+            TenantIndexRegistry.TenantPlacement placement = indexRegistry.placement(tenantId);
+            if (placement == null) {
+                searchMetrics.record(SearchMetrics.Operation.MULTI_GET, tenantId, SearchMetrics.NOT_FOUND, startTime);
+                return documents;
+            }
+            boolean cacheable = !placement.rollover() || refreshManager.isSettled(tenantId);
+            List<String> ids = new ArrayList<>(uncached);
+            Map<String, SearchDocument> found = placement.rollover() 
+                ? searchByIds(indexName, ids) 
+                : multiGet(placement, ids);
+            TenantIndexRegistry.TenantPlacement promoted = found.size() == ids.size() ? null 
+                : promotedPlacement(tenantId, placement);
+            if (promoted != null) {
+                found = multiGet(promoted, ids);
+            }
+            
+            for (int i = 0; i < docIds.size(); i++) {
+                SearchDocument document = found.get(docIds.get(i));
+                if (document != null) {
+                    documents.set(i, document);
+                }
+            }
+            if (cacheable) {
+                found.forEach((docId, document) -> documentCache.put(tenantId, docId, readVersion, document));
+            }
+            searchMetrics.record(SearchMetrics.Operation.MULTI_GET, tenantId, SearchMetrics.SUCCESS, startTime);
+            log.debug("Retrieved {} of {} documents for tenant {}, {} from cache", 
+                found.size(), docIds.size(), tenantId, docIds.size() - ids.size());
+            return documents;
+            
+        } catch (IOException | ElasticsearchException e) {
+            if (e instanceof ElasticsearchException ee && indexRegistry.handleIndexNotFound(tenantId, ee)) {
+                searchMetrics.record(SearchMetrics.Operation.MULTI_GET, tenantId, SearchMetrics.NOT_FOUND, startTime);
+                return documents;
+            }
+            log.error("Error retrieving {} documents for tenant {}: {}", docIds.size(), tenantId, e.getMessage(), e);
+            searchMetrics.record(SearchMetrics.Operation.MULTI_GET, tenantId, SearchMetrics.ERROR, startTime);
+            throw new RuntimeException("Failed to retrieve documents", e);
+        }
+    }
+    
+    /**
+     * Found documents by id; an id whose shard failed is logged and treated as missing
+     */
+    private Map<String, SearchDocument> multiGet(TenantIndexRegistry.TenantPlacement placement,
+                                                 List<String> docIds) throws IOException {
+        MgetResponse<SearchDocument> response = elasticsearchClient.mget(m -> m
+            .index(placement.target())
+            .ids(docIds.stream().map(placement::documentId).toList()), 
+            SearchDocument.class);
+        Map<String, SearchDocument> found = new HashMap<>();
+        // Items come back in request order, so each maps to the client's id
+        List<MultiGetResponseItem<SearchDocument>> items = response.docs();
+        for (int i = 0; i < items.size(); i++) {
+            MultiGetResponseItem<SearchDocument> item = items.get(i);
+            if (item.isResult()) {
+                if (item.result().found()) {
+                    found.put(docIds.get(i), item.result().source());
+                }
+            } else {
+                log.warn("Failed to get document {} from {}: {}", 
+                    docIds.get(i), placement.target(), item.failure().error().reason());
+            }
+        }
+        return found;
+    }
+    
+    /**
+     * Latest copy of each document across a rollover series, collapsed on doc_id
+     */
+    private Map<String, SearchDocument> searchByIds(String indexName, List<String> docIds) throws IOException {
+        ResponseBody<SearchDocument> response = elasticsearchClient.search(s -> s
+            .index(indexName)
+            .query(q -> q.ids(i -> i.values(docIds)))
+            .collapse(c -> c.field("doc_id"))
+            // The copy in the later index of the series is the later write
+            .sort(so -> so.field(f -> f.field("_index").order(SortOrder.Desc)))
+            .size(docIds.size()),
+            SearchDocument.class);
+        Map<String, SearchDocument> found = new HashMap<>();
+        for (Hit<SearchDocument> hit : response.hits().hits()) {
+            found.putIfAbsent(hit.id(), hit.source());
+        }
+        return found;
+    }
+    
     /**
      * Get tenant statistics
      */
     public Map<String, Object> getTenantStats(String tenantId) {
+        long startTime = System.nanoTime();
         Map<String, Object> stats = new HashMap<>();
         
         try {
-            String indexName = SearchDocument.getIndexName(tenantId);
+            TenantIndexRegistry.TenantPlacement placement = indexRegistry.placement(tenantId);
             
-            ExistsRequest existsRequest = ExistsRequest.of(e -> e.index(indexName));
-            if (!elasticsearchClient.indices().exists(existsRequest).value()) {
+            if (placement == null) {
                 stats.put("totalDocuments", 0);
                 stats.put("indexExists", false);
+                searchMetrics.record(SearchMetrics.Operation.STATS, tenantId, SearchMetrics.NOT_FOUND, startTime);
                 return stats;
             }
+            String indexName = placement.index();
             
-            // Get document count
-            CountRequest countRequest = CountRequest.of(c -> c.index(indexName));
+            // Get document count; the tenant's alias filters out other tenants in a shared index
+            CountRequest countRequest = CountRequest.of(c -> c.index(placement.target()));
             CountResponse countResponse = elasticsearchClient.count(countRequest);
             
             // Get index info
@@ -333,9 +1323,19 @@ public class ElasticsearchSearchService {
             stats.put("shards", shards);
             stats.put("replicas", replicas);
             stats.put("indexName", indexName);
+            stats.put("placement", placement.shared() ? "shared" : placement.rollover() ? "rollover" : "dedicated");
+            searchMetrics.record(SearchMetrics.Operation.STATS, tenantId, SearchMetrics.SUCCESS, startTime);
             
         } catch (IOException | ElasticsearchException e) {
+            if (e instanceof ElasticsearchException ee && indexRegistry.handleIndexNotFound(tenantId, ee)) {
+                stats.clear();
+                stats.put("totalDocuments", 0);
+                stats.put("indexExists", false);
+                searchMetrics.record(SearchMetrics.Operation.STATS, tenantId, SearchMetrics.NOT_FOUND, startTime);
+                return stats;
+            }
             log.error("Error getting tenant stats: {}", e.getMessage(), e);
+            searchMetrics.record(SearchMetrics.Operation.STATS, tenantId, SearchMetrics.ERROR, startTime);
             stats.put("error", e.getMessage());
         }
         
@@ -347,11 +1347,9 @@ public class ElasticsearchSearchService {
      */
     public Map<String, Object> getMetrics() {
         Map<String, Object> metrics = new HashMap<>();
-        metrics.put("totalQueries", totalQueries.get());
-        metrics.put("totalDocuments", totalDocuments.get());
-        metrics.put("avgQueryTimeMs", totalQueries.get() > 0 
-            ? (double) totalQueryTimeMs.get() / totalQueries.get() 
-            : 0.0);
+        metrics.put("totalQueries", searchMetrics.count(SearchMetrics.Operation.SEARCH));
+        metrics.put("totalDocuments", searchMetrics.documentsIndexed());
+        metrics.put("avgQueryTimeMs", searchMetrics.meanMs(SearchMetrics.Operation.SEARCH));
         
         try {
             // Get cluster health
@@ -373,6 +1371,48 @@ public class ElasticsearchSearchService {
     public static class SearchResponse {
         private List<SearchResult> results;
         private QueryStats stats;
+        // Value counts per requested metadata key
+        @JsonInclude(JsonInclude.Include.NON_EMPTY)
+        private Map<String, List<FacetBucket>> facets;
+        
+        public SearchResponse(List<SearchResult> results, QueryStats stats) {
+            this(results, stats, Map.of());
+        }
+    }
+    
+    @lombok.Data
+    @lombok.AllArgsConstructor
+    public static class FacetBucket {
+        // String, number or boolean, as mapped
+        private Object value;
+        private long count;
+    }
+    
+    @lombok.Data
+    @lombok.AllArgsConstructor
+    public static class SearchPage {
+        private List<SearchResult> results;
+        private QueryStats stats;
+        // Null on the last page
+        private String cursor;
+    }
+    
+    public static class CursorExpiredException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public CursorExpiredException() {
+            super("Cursor expired");
+        }
+    }
+    
+    @lombok.Data
+    @lombok.NoArgsConstructor
+    @lombok.AllArgsConstructor
+    public static class MultiSearchQuery {
+        private String query;
+        private int topK;
+        private List<String> fields;
+        private SearchFilters filters;
     }
     
     @lombok.Data
@@ -381,10 +1421,20 @@ public class ElasticsearchSearchService {
         private int successCount;
         private int failureCount;
         private double timeMs;
+        private List<ItemError> errors;
+    }
+    
+    @lombok.Data
+    @lombok.AllArgsConstructor
+    public static class ItemError {
+        private String docId;
+        private int status;
+        private String type;
+        private String reason;
     }
     
     @lombok.Data
-    @lombok.Builder
+    @lombok.Builder(toBuilder = true)
     @lombok.NoArgsConstructor
     @lombok.AllArgsConstructor
     public static class QueryStats {
@@ -392,5 +1442,8 @@ public class ElasticsearchSearchService {
         private int docsScanned;
         private int shardsQueried;
         private int resultsCount;
+        private boolean cached;
+        // Shared with an identical search that was already in flight
+        private boolean coalesced;
     }
 }
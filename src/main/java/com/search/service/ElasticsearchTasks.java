@@ -0,0 +1,48 @@
+package com.search.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.tasks.GetTasksResponse;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonObject;
+
+import java.io.IOException;
+
+/**
+ * Waiting on Elasticsearch background tasks started with wait_for_completion=false
+ */
+final class ElasticsearchTasks {
+
+    private static final long POLL_MS = 1000;
+
+    private ElasticsearchTasks() {
+    }
+
+    /**
+     * Poll a background task until it finishes
+     *
+     * @throws IOException if it failed or any document could not be written
+     */
+    static void await(ElasticsearchClient elasticsearchClient, String taskId) throws IOException {
+        while (true) {
+            GetTasksResponse task = elasticsearchClient.tasks().get(g -> g.taskId(taskId));
+            if (task.completed()) {
+                if (task.error() != null) {
+                    throw new IOException("Task " + taskId + " failed: " + task.error().reason());
+                }
+                JsonArray failures = task.response() != null
+                    ? task.response().toJson().asJsonObject().getJsonArray("failures") : null;
+                if (failures != null && !failures.isEmpty()) {
+                    JsonObject first = failures.getJsonObject(0);
+                    throw new IOException("Task " + taskId + " had " + failures.size() + " failures, first: " + first);
+                }
+                return;
+            }
+            try {
+                Thread.sleep(POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted waiting for task " + taskId, e);
+            }
+        }
+    }
+}
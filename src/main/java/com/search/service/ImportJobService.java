@@ -0,0 +1,499 @@
+package com.search.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.HealthStatus;
+import co.elastic.clients.elasticsearch.core.GetResponse;
+import co.elastic.clients.elasticsearch.indices.IndexSettings;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Bulk import jobs for loading a tenant's initial data
+ *
+ * Indexing into an index with replicas and a 1s refresh writes every
+ * document several times and refreshes constantly. An import job instead:
+ * 1. Sets number_of_replicas=0 and refresh_interval=-1 on the tenant's index,
+ *    remembering the previous values
+ * 2. Streams NDJSON parts through parallel bulks; a job takes any number of
+ *    parts, so an interrupted upload resumes from documentsReceived
+ * 3. On finish, restores the settings, refreshes, force-merges and waits
+ *    for the index to turn green again
+ *
+ * A job that won't be finished is aborted instead, which restores the
+ * settings and releases the tenant right away; documents already loaded
+ * stay in the index.
+ *
+ * Jobs are stored in search-import-jobs, so any instance can continue one
+ * after a restart. A tenant has at most one unfinished job; tenants in a
+ * shared index can't import, since the settings would apply to others.
+ */
+@Slf4j
+@Service
+public class ImportJobService {
+
+    private static final String JOBS_INDEX = "search-import-jobs";
+    private static final String INDEX_ALREADY_EXISTS = "resource_already_exists_exception";
+    private static final String VERSION_CONFLICT = "version_conflict_engine_exception";
+    private static final int MAX_ERRORS = 10;
+
+    public enum Status {
+        LOADING,
+        FINALIZING,
+        COMPLETED,
+        FAILED,
+        ABORTED
+    }
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final TenantIndexRegistry indexRegistry;
+    private final StreamingIngestService streamingIngestService;
+    private final BulkIndexer bulkIndexer;
+    private final RolloverManager rolloverManager;
+    private final SearchResultCache resultCache;
+    private final DocumentCache documentCache;
+    private final SearchMetrics searchMetrics;
+    private final long forceMergeSegments;
+    private final Duration greenTimeout;
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+    private final ExecutorService finalizer;
+    private volatile boolean jobsIndexReady;
+
+    public ImportJobService(
+            ElasticsearchClient elasticsearchClient,
+            TenantIndexRegistry indexRegistry,
+            StreamingIngestService streamingIngestService,
+            BulkIndexer bulkIndexer,
+            RolloverManager rolloverManager,
+            SearchResultCache resultCache,
+            DocumentCache documentCache,
+            SearchMetrics searchMetrics,
+            @Value("${search.import.force-merge-segments:0}") long forceMergeSegments,
+            @Value("${search.import.green-timeout:30m}") Duration greenTimeout) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.indexRegistry = indexRegistry;
+        this.streamingIngestService = streamingIngestService;
+        this.bulkIndexer = bulkIndexer;
+        this.rolloverManager = rolloverManager;
+        this.resultCache = resultCache;
+        this.documentCache = documentCache;
+        this.searchMetrics = searchMetrics;
+        this.forceMergeSegments = forceMergeSegments;
+        this.greenTimeout = greenTimeout;
+        this.finalizer = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "import-finalizer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start an import job: the tenant's index stops replicating and refreshing until it finishes
+     *
+     * @throws ImportConflictException if the tenant is in a shared index or already has an unfinished job
+     */
+    public ImportJob start(String tenantId) throws IOException {
+        TenantIndexRegistry.TenantPlacement placement = indexRegistry.ensurePlacement(tenantId);
+        if (placement.shared()) {
+            throw new ImportConflictException("tenant shares an index with other tenants and can't import");
+        }
+        ensureJobsIndex();
+
+        ImportJob job = new ImportJob();
+        job.setJobId(UUID.randomUUID().toString());
+        job.setTenantId(tenantId);
+        job.setIndex(placement.index());
+        job.setStatus(Status.LOADING);
+        job.setCreatedAt(Instant.now());
+
+        // The lock document is what makes a second job for the tenant fail
+        try {
+            elasticsearchClient.create(c -> c
+                .index(JOBS_INDEX)
+                .id(lockId(tenantId))
+                .document(new ImportLock(job.getJobId()))
+            );
+        } catch (ElasticsearchException e) {
+            if (e.error() == null || !VERSION_CONFLICT.equals(e.error().type())) {
+                throw e;
+            }
+            GetResponse<ImportLock> lock = elasticsearchClient.get(
+                g -> g.index(JOBS_INDEX).id(lockId(tenantId)), ImportLock.class);
+            String activeJob = lock.found() ? lock.source().jobId() : null;
+            throw new ImportConflictException("tenant already has an unfinished import job " + activeJob);
+        }
+
+        try {
+            IndexSettings settings = elasticsearchClient.indices()
+                .getSettings(g -> g.index(placement.index()))
+                .get(placement.index()).settings().index();
+            job.setOriginalReplicas(settings.numberOfReplicas());
+            job.setOriginalRefreshInterval(settings.refreshInterval() != null ? settings.refreshInterval().time() : null);
+            persist(job);
+
+            elasticsearchClient.indices().putSettings(p -> p
+                .index(job.getIndex())
+                .settings(s -> s.numberOfReplicas("0").refreshInterval(t -> t.time("-1")))
+            );
+        } catch (IOException | RuntimeException e) {
+            // Nothing has changed yet, so the tenant may try again
+            elasticsearchClient.delete(d -> d.index(JOBS_INDEX).id(lockId(tenantId)));
+            throw e;
+        }
+        jobs.put(job.getJobId(), job);
+        log.info("Started import job {} for tenant {} into {} (replicas were {}, refresh_interval {})",
+                job.getJobId(), tenantId, job.getIndex(), job.getOriginalReplicas(), job.getOriginalRefreshInterval());
+        return job.snapshot();
+    }
+
+    /**
+     * Stream one part of the job's documents as NDJSON
+     *
+     * @throws ImportConflictException if the job is not loading or another part is in progress
+     */
+    public ImportJob load(String tenantId, String jobId, InputStream inputStream) throws IOException {
+        ImportJob job = job(tenantId, jobId);
+        job.beginPart();
+
+        StreamingIngestService.StreamIngestResult result = null;
+        try {
+            TenantIndexRegistry.TenantPlacement placement = indexRegistry.ensurePlacement(tenantId);
+            result = streamingIngestService.ingest(tenantId, inputStream, documents -> {
+                RolloverManager.WrittenCopies written = new RolloverManager.WrittenCopies();
+                ElasticsearchSearchService.BulkIndexResult chunk = bulkIndexer.index(documents, doc -> placement, null,
+                    (doc, index) -> {
+                        if (placement.rollover()) {
+                            written.add(tenantId, index, doc.getDocId());
+                        }
+                    });
+                rolloverManager.deleteOlderCopies(written, false);
+                // Bulk loads may overwrite documents; reads by id see them at once
+                documentCache.invalidateTenant(tenantId);
+                job.addChunk(chunk);
+                searchMetrics.documentsIndexed(chunk.getSuccessCount());
+                return chunk;
+            });
+        } finally {
+            job.endPart(result);
+            resultCache.invalidateTenant(tenantId);
+            persist(job);
+        }
+
+        log.info("Import job {} received {} documents in part {} ({} failed, {} skipped)",
+                jobId, result.getIndexed() + result.getFailed() + result.getSkipped(), job.getParts(),
+                result.getFailed(), result.getSkipped());
+        ImportJob snapshot = job.snapshot();
+        if (result.getParseError() != null) {
+            snapshot.setError("Malformed NDJSON: " + result.getParseError());
+        }
+        return snapshot;
+    }
+
+    /**
+     * Restore the index settings, force-merge and wait for green, in the background
+     *
+     * A failed finish can be retried.
+     */
+    public ImportJob finish(String tenantId, String jobId) throws IOException {
+        ImportJob job = job(tenantId, jobId);
+        job.beginFinalizing();
+        persist(job);
+        finalizer.execute(() -> finalizeJob(job));
+        return job.snapshot();
+    }
+
+    /**
+     * Give up on a job: restore the index settings and release the tenant for a new job
+     *
+     * Also recovers a job left in FINALIZING by an instance that stopped.
+     *
+     * @throws ImportConflictException if a part or the finish is running on this instance, or the job has ended
+     */
+    public ImportJob abort(String tenantId, String jobId) throws IOException {
+        ImportJob job = job(tenantId, jobId);
+        job.beginAborting();
+        try {
+            restoreSettings(job);
+            elasticsearchClient.indices().refresh(r -> r.index(job.getIndex()));
+            resultCache.invalidateTenant(tenantId);
+            elasticsearchClient.delete(d -> d.index(JOBS_INDEX).id(lockId(tenantId)));
+        } catch (IOException | RuntimeException e) {
+            job.endAborting();
+            throw e;
+        }
+        job.finished(Status.ABORTED, null);
+        persist(job);
+        log.info("Import job {} for tenant {} aborted after {} documents", jobId, tenantId, job.getIndexed());
+        return job.snapshot();
+    }
+
+    /**
+     * Job progress and throughput
+     */
+    public ImportJob get(String tenantId, String jobId) throws IOException {
+        return job(tenantId, jobId).snapshot();
+    }
+
+    private void finalizeJob(ImportJob job) {
+        long startTime = System.nanoTime();
+        try {
+            restoreSettings(job);
+            elasticsearchClient.indices().refresh(r -> r.index(job.getIndex()));
+
+            // Runs as a task so a long merge doesn't hit the client's socket timeout
+            String task = elasticsearchClient.indices().forcemerge(f -> {
+                f.index(job.getIndex()).waitForCompletion(false);
+                if (forceMergeSegments > 0) {
+                    f.maxNumSegments(forceMergeSegments);
+                }
+                return f;
+            }).task();
+            if (task != null) {
+                ElasticsearchTasks.await(elasticsearchClient, task);
+            }
+
+            awaitGreen(job.getIndex());
+            resultCache.invalidateTenant(job.getTenantId());
+            elasticsearchClient.delete(d -> d.index(JOBS_INDEX).id(lockId(job.getTenantId())));
+            job.finished(Status.COMPLETED, null);
+            log.info("Import job {} finished in {}ms", job.getJobId(), (System.nanoTime() - startTime) / 1_000_000);
+
+        } catch (IOException | RuntimeException e) {
+            log.error("Import job {} failed to finish: {}", job.getJobId(), e.getMessage(), e);
+            job.finished(Status.FAILED, e.getMessage());
+        }
+
+        try {
+            persist(job);
+        } catch (IOException | ElasticsearchException e) {
+            log.error("Failed to store import job {}: {}", job.getJobId(), e.getMessage(), e);
+        }
+    }
+
+    private void restoreSettings(ImportJob job) throws IOException {
+        elasticsearchClient.indices().putSettings(p -> p
+            .index(job.getIndex())
+            .settings(s -> {
+                s.numberOfReplicas(job.getOriginalReplicas() != null ? job.getOriginalReplicas() : "1");
+                // An index without its own refresh_interval refreshes every second
+                return s.refreshInterval(t -> t.time(
+                    job.getOriginalRefreshInterval() != null ? job.getOriginalRefreshInterval() : "1s"));
+            })
+        );
+    }
+
+    private void awaitGreen(String index) throws IOException {
+        long deadline = System.nanoTime() + greenTimeout.toNanos();
+        while (elasticsearchClient.cluster()
+                .health(h -> h.index(index).waitForStatus(HealthStatus.Green).timeout(t -> t.time("30s")))
+                .timedOut()) {
+            if (System.nanoTime() - deadline > 0) {
+                throw new IOException("Index " + index + " did not turn green within " + greenTimeout);
+            }
+        }
+    }
+
+    /**
+     * The caller's job, from this instance or the jobs index
+     *
+     * @throws ImportJobNotFoundException if it doesn't exist or belongs to another tenant
+     */
+    private ImportJob job(String tenantId, String jobId) throws IOException {
+        ImportJob job = jobs.get(jobId);
+        if (job == null) {
+            try {
+                GetResponse<ImportJob> response = elasticsearchClient.get(
+                    g -> g.index(JOBS_INDEX).id(jobId), ImportJob.class);
+                if (response.found()) {
+                    job = jobs.computeIfAbsent(jobId, id -> response.source());
+                }
+            } catch (ElasticsearchException e) {
+                if (!TenantIndexRegistry.isIndexNotFound(e)) {
+                    throw e;
+                }
+            }
+        }
+        if (job == null || !tenantId.equals(job.getTenantId())) {
+            throw new ImportJobNotFoundException();
+        }
+        return job;
+    }
+
+    private void persist(ImportJob job) throws IOException {
+        ImportJob snapshot = job.snapshot();
+        elasticsearchClient.index(i -> i.index(JOBS_INDEX).id(snapshot.getJobId()).document(snapshot));
+    }
+
+    private void ensureJobsIndex() throws IOException {
+        if (jobsIndexReady) {
+            return;
+        }
+        try {
+            elasticsearchClient.indices().create(c -> c
+                .index(JOBS_INDEX)
+                .settings(s -> s.numberOfShards("1").autoExpandReplicas("0-1"))
+            );
+        } catch (ElasticsearchException e) {
+            if (e.error() == null || !INDEX_ALREADY_EXISTS.equals(e.error().type())) {
+                throw e;
+            }
+        }
+        jobsIndexReady = true;
+    }
+
+    private static String lockId(String tenantId) {
+        return "lock-" + TenantIndexRegistry.targetName(tenantId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        finalizer.shutdownNow();
+    }
+
+    // Helper classes
+
+    @lombok.Data
+    @lombok.Builder(toBuilder = true)
+    @lombok.NoArgsConstructor
+    @lombok.AllArgsConstructor
+    public static class ImportJob {
+        private String jobId;
+        private String tenantId;
+        private String index;
+        private Status status;
+        private String originalReplicas;
+        private String originalRefreshInterval;
+        // Resume an interrupted upload from this NDJSON line
+        private long documentsReceived;
+        private long indexed;
+        private long failed;
+        private long skipped;
+        private int parts;
+        private long loadTimeMs;
+        private double docsPerSecond;
+        private Instant createdAt;
+        private Instant finishedAt;
+        private String error;
+        private List<ElasticsearchSearchService.ItemError> errors;
+
+        // Instance-local: whether a part or the finish is running here
+        @com.fasterxml.jackson.annotation.JsonIgnore
+        private long partStartNanos;
+        @com.fasterxml.jackson.annotation.JsonIgnore
+        private boolean busy;
+
+        synchronized void beginPart() {
+            if (status != Status.LOADING || busy) {
+                throw new ImportConflictException(busy
+                    ? "another part of the job is still loading" : "job is " + status);
+            }
+            busy = true;
+            partStartNanos = System.nanoTime();
+        }
+
+        synchronized void addChunk(ElasticsearchSearchService.BulkIndexResult chunk) {
+            indexed += chunk.getSuccessCount();
+            failed += chunk.getFailureCount();
+            if (errors == null) {
+                errors = new ArrayList<>();
+            }
+            for (ElasticsearchSearchService.ItemError itemError : chunk.getErrors()) {
+                if (errors.size() >= MAX_ERRORS) {
+                    break;
+                }
+                errors.add(itemError);
+            }
+        }
+
+        /**
+         * @param result the part's result, or null if it failed before reading to the end
+         */
+        synchronized void endPart(StreamingIngestService.StreamIngestResult result) {
+            if (result != null) {
+                documentsReceived += result.getIndexed() + result.getFailed() + result.getSkipped();
+                skipped += result.getSkipped();
+            }
+            parts++;
+            loadTimeMs += (System.nanoTime() - partStartNanos) / 1_000_000;
+            busy = false;
+        }
+
+        synchronized void beginFinalizing() {
+            // FINALIZING without busy means another instance is finishing it
+            if (busy || (status != Status.LOADING && status != Status.FAILED)) {
+                throw new ImportConflictException(busy ? "the job is loading or finishing" : "job is " + status);
+            }
+            busy = true;
+            status = Status.FINALIZING;
+            error = null;
+        }
+
+        synchronized void beginAborting() {
+            if (busy || status == Status.COMPLETED || status == Status.ABORTED) {
+                throw new ImportConflictException(busy ? "the job is loading or finishing" : "job is " + status);
+            }
+            busy = true;
+        }
+
+        synchronized void endAborting() {
+            busy = false;
+        }
+
+        synchronized void finished(Status finalStatus, String failure) {
+            status = finalStatus;
+            error = failure;
+            finishedAt = Instant.now();
+            busy = false;
+        }
+
+        /**
+         * Consistent copy with throughput including the part in progress
+         */
+        synchronized ImportJob snapshot() {
+            long timeMs = loadTimeMs;
+            if (busy && status == Status.LOADING) {
+                timeMs += (System.nanoTime() - partStartNanos) / 1_000_000;
+            }
+            return toBuilder()
+                .docsPerSecond(timeMs > 0 ? indexed * 1000.0 / timeMs : 0.0)
+                .errors(errors != null ? List.copyOf(errors) : List.of())
+                .build();
+        }
+    }
+
+    /**
+     * Document whose existence marks a tenant's unfinished job
+     */
+    record ImportLock(String jobId) {
+    }
+
+    public static class ImportJobNotFoundException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public ImportJobNotFoundException() {
+            super("Import job not found");
+        }
+    }
+
+    public static class ImportConflictException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public ImportConflictException(String message) {
+            super(message);
+        }
+    }
+}
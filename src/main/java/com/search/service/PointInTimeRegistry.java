@@ -0,0 +1,192 @@
+package com.search.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.Time;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Open point-in-time contexts per tenant
+ *
+ * - Each page of a cursor renews its PIT's keep-alive
+ * - A tenant holds at most max-per-tenant PITs; opening one more closes
+ *   the least recently used
+ * - A background sweep closes PITs idle for longer than the keep-alive,
+ *   so abandoned cursors don't pin segments until the cluster notices
+ */
+@Slf4j
+@Component
+public class PointInTimeRegistry {
+
+    private static final String SEARCH_CONTEXT_MISSING = "search_context_missing_exception";
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final Duration keepAlive;
+    private final int maxPerTenant;
+    private final Time keepAliveTime;
+
+    // tenant -> PIT id -> last use (System.nanoTime), in access order
+    private final Map<String, LinkedHashMap<String, Long>> openPits = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sweeper;
+
+    public PointInTimeRegistry(
+            ElasticsearchClient elasticsearchClient,
+            @Value("${search.pit.keep-alive:2m}") Duration keepAlive,
+            @Value("${search.pit.max-per-tenant:10}") int maxPerTenant,
+            @Value("${search.pit.sweep-interval:30s}") Duration sweepInterval) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.keepAlive = keepAlive;
+        this.maxPerTenant = maxPerTenant;
+        this.keepAliveTime = Time.of(t -> t.time(keepAlive.toSeconds() + "s"));
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "pit-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep,
+                sweepInterval.toMillis(), sweepInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Keep-alive to send with every search that uses a PIT
+     */
+    public Time keepAlive() {
+        return keepAliveTime;
+    }
+
+    /**
+     * Open a PIT on an index, closing the tenant's least recently used one if at the limit
+     */
+    public String open(String tenantId, String indexName) throws IOException {
+        String evicted = null;
+        LinkedHashMap<String, Long> pits = pitsOf(tenantId);
+        synchronized (pits) {
+            if (pits.size() >= maxPerTenant) {
+                Iterator<String> eldest = pits.keySet().iterator();
+                evicted = eldest.next();
+                eldest.remove();
+            }
+        }
+        if (evicted != null) {
+            log.debug("Tenant {} has {} open PITs, closing least recently used", tenantId, maxPerTenant);
+            closeQuietly(evicted);
+        }
+
+        String pitId = elasticsearchClient.openPointInTime(o -> o
+            .index(indexName)
+            .keepAlive(keepAliveTime)
+        ).id();
+        synchronized (pits) {
+            pits.put(pitId, System.nanoTime());
+        }
+        return pitId;
+    }
+
+    /**
+     * Record a page served from a PIT; the cluster may hand back a new id for it
+     */
+    public void touch(String tenantId, String pitId, String latestPitId) {
+        LinkedHashMap<String, Long> pits = pitsOf(tenantId);
+        synchronized (pits) {
+            if (!pitId.equals(latestPitId)) {
+                pits.remove(pitId);
+            }
+            pits.put(latestPitId, System.nanoTime());
+        }
+    }
+
+    /**
+     * Close a PIT whose cursor is exhausted
+     */
+    public void close(String tenantId, String pitId) {
+        forget(tenantId, pitId);
+        closeQuietly(pitId);
+    }
+
+    /**
+     * Stop tracking a PIT the cluster no longer has
+     */
+    public void forget(String tenantId, String pitId) {
+        LinkedHashMap<String, Long> pits = openPits.get(tenantId);
+        if (pits != null) {
+            synchronized (pits) {
+                pits.remove(pitId);
+            }
+        }
+    }
+
+    public static boolean isContextMissing(ElasticsearchException e) {
+        return e.error() != null && SEARCH_CONTEXT_MISSING.equals(e.error().type());
+    }
+
+    private LinkedHashMap<String, Long> pitsOf(String tenantId) {
+        return openPits.computeIfAbsent(tenantId, k -> new LinkedHashMap<>(16, 0.75f, true));
+    }
+
+    void sweep() {
+        long idleCutoff = System.nanoTime() - keepAlive.toNanos();
+        List<String> expired = new ArrayList<>();
+
+        for (LinkedHashMap<String, Long> pits : openPits.values()) {
+            synchronized (pits) {
+                // Access order: the least recently used come first
+                Iterator<Map.Entry<String, Long>> it = pits.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<String, Long> entry = it.next();
+                    if (entry.getValue() - idleCutoff > 0) {
+                        break;
+                    }
+                    expired.add(entry.getKey());
+                    it.remove();
+                }
+            }
+        }
+        openPits.values().removeIf(pits -> {
+            synchronized (pits) {
+                return pits.isEmpty();
+            }
+        });
+
+        if (!expired.isEmpty()) {
+            log.debug("Closing {} idle PITs", expired.size());
+            expired.forEach(this::closeQuietly);
+        }
+    }
+
+    private void closeQuietly(String pitId) {
+        try {
+            elasticsearchClient.closePointInTime(c -> c.id(pitId));
+        } catch (IOException | ElasticsearchException e) {
+            // Already expired or closed
+            log.debug("Could not close PIT: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+        List<String> remaining = new ArrayList<>();
+        for (LinkedHashMap<String, Long> pits : openPits.values()) {
+            synchronized (pits) {
+                remaining.addAll(pits.keySet());
+                pits.clear();
+            }
+        }
+        remaining.forEach(this::closeQuietly);
+    }
+}
@@ -0,0 +1,393 @@
+package com.search.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.Refresh;
+import co.elastic.clients.elasticsearch.indices.IndexSettings;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-tenant refresh management and read-your-writes consistency tokens
+ *
+ * With the TOKEN write policy, writes return as soon as Elasticsearch has
+ * acknowledged them instead of waiting for a refresh. Each write hands out
+ * a consistency token, the time it was acknowledged. A search presenting
+ * a token waits only if that write may not be visible yet:
+ * - A refresh that started after the write makes it visible
+ * - So does the periodic refresh, within the longest refresh_interval any
+ *   instance may have set plus a slack; tokens are honoured by whichever
+ *   instance the search lands on
+ * Otherwise one explicit refresh is sent, shared by every search waiting
+ * on the tenant.
+ *
+ * During sustained ingestion, a dedicated or rollover tenant's write index
+ * has its refresh_interval widened to burst-interval, and the previous
+ * value is put back once ingestion has been quiet for quiet-after. Shared
+ * indices keep their interval, since other tenants read from them. An
+ * index with refresh disabled, such as one an import job is loading, is
+ * not widened; one disabled while widened is restored after the import
+ * puts the burst interval back. An interval changed to anything else
+ * while widened is left alone.
+ */
+@Slf4j
+@Component
+public class RefreshManager {
+
+    /**
+     * How single-document and batch writes treat refresh
+     */
+    public enum WritePolicy {
+        /** Return on acknowledgement with a consistency token */
+        TOKEN,
+        /** Block each write until a refresh makes it visible */
+        WAIT_FOR
+    }
+
+    private static final String DISABLED = "-1";
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final ElasticsearchAsyncClient elasticsearchAsyncClient;
+    private final TenantIndexRegistry indexRegistry;
+    private final WritePolicy writePolicy;
+    private final long baseIntervalMs;
+    private final long slackMs;
+    private final long maxIntervalMs;
+    private final boolean adaptive;
+    private final double burstDocsPerSecond;
+    private final long burstAfterMs;
+    private final long burstIntervalMs;
+    private final long quietAfterMs;
+    private final Counter forcedRefreshes;
+    private final Map<String, TenantState> tenants = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    public RefreshManager(
+            ElasticsearchClient elasticsearchClient,
+            ElasticsearchAsyncClient elasticsearchAsyncClient,
+            TenantIndexRegistry indexRegistry,
+            MeterRegistry meterRegistry,
+            @Value("${search.refresh.write-policy:TOKEN}") WritePolicy writePolicy,
+            @Value("${search.refresh.interval:1s}") Duration baseInterval,
+            @Value("${search.refresh.visibility-slack:1s}") Duration slack,
+            @Value("${search.refresh.adaptive.enabled:true}") boolean adaptive,
+            @Value("${search.refresh.adaptive.burst-docs-per-second:1000}") double burstDocsPerSecond,
+            @Value("${search.refresh.adaptive.burst-after:5s}") Duration burstAfter,
+            @Value("${search.refresh.adaptive.burst-interval:30s}") Duration burstInterval,
+            @Value("${search.refresh.adaptive.quiet-after:30s}") Duration quietAfter,
+            @Value("${search.refresh.adaptive.check-interval:1s}") Duration checkInterval) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.elasticsearchAsyncClient = elasticsearchAsyncClient;
+        this.indexRegistry = indexRegistry;
+        this.writePolicy = writePolicy;
+        this.baseIntervalMs = baseInterval.toMillis();
+        this.slackMs = slack.toMillis();
+        this.adaptive = adaptive;
+        this.burstDocsPerSecond = burstDocsPerSecond;
+        this.burstAfterMs = burstAfter.toMillis();
+        this.burstIntervalMs = burstInterval.toMillis();
+        this.quietAfterMs = quietAfter.toMillis();
+        this.maxIntervalMs = adaptive ? Math.max(baseIntervalMs, burstIntervalMs) : baseIntervalMs;
+        this.forcedRefreshes = meterRegistry.counter("search.refresh.forced");
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "refresh-manager");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::check,
+                checkInterval.toMillis(), checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Refresh parameter for write requests, or null to not wait
+     */
+    public Refresh writeRefresh() {
+        return writePolicy == WritePolicy.WAIT_FOR ? Refresh.WaitFor : null;
+    }
+
+    /**
+     * Note acknowledged writes of a tenant
+     *
+     * @return consistency token covering these writes
+     */
+    public String recordWrite(String tenantId, int docs) {
+        long now = System.currentTimeMillis();
+        TenantState state = tenants.computeIfAbsent(tenantId, TenantState::new);
+        while (true) {
+            state.docsSinceCheck.addAndGet(docs);
+            state.lastWriteMs.accumulateAndGet(now, Math::max);
+            if (!state.retired) {
+                return Long.toString(now);
+            }
+            // check() was dropping the state meanwhile; a state it kept saw this write
+            TenantState current = tenants.computeIfAbsent(tenantId, TenantState::new);
+            if (current == state) {
+                return Long.toString(now);
+            }
+            state = current;
+        }
+    }
+
+    /**
+     * Token covering every write of the tenant acknowledged so far
+     */
+    public String token(String tenantId) {
+        TenantState state = tenants.get(tenantId);
+        return Long.toString(state != null ? state.lastWriteMs.get() : 0);
+    }
+
+    /**
+     * The later of two tokens; a malformed one loses
+     */
+    static String laterToken(String a, String b) {
+        return parseToken(a) >= parseToken(b) ? a : b;
+    }
+
+    private static long parseToken(String token) {
+        try {
+            return Long.parseLong(token);
+        } catch (NumberFormatException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Whether all acknowledged writes of the tenant are visible to search
+     *
+     * Results read while this is false must not be cached.
+     */
+    public boolean isSettled(String tenantId) {
+        TenantState state = tenants.get(tenantId);
+        return state == null || isVisible(state, state.lastWriteMs.get());
+    }
+
+    /**
+     * Complete once the writes a token covers are visible to search
+     *
+     * A malformed token is ignored; one from the future counts as now.
+     */
+    public CompletableFuture<Void> awaitVisible(String tenantId, String token) {
+        if (token == null || token.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        long writeMs;
+        try {
+            writeMs = Math.min(Long.parseLong(token), System.currentTimeMillis());
+        } catch (NumberFormatException e) {
+            return CompletableFuture.completedFuture(null);
+        }
+        // The token may come from another instance, which this one has no state for
+        TenantState state = tenants.computeIfAbsent(tenantId, TenantState::new);
+        if (isVisible(state, writeMs)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return state.refreshCovering(writeMs);
+    }
+
+    private boolean isVisible(TenantState state, long writeMs) {
+        // Strict: a refresh started in the same millisecond may have started before the write
+        if (writePolicy == WritePolicy.WAIT_FOR || writeMs < state.lastRefreshStartMs) {
+            return true;
+        }
+        return System.currentTimeMillis() >= writeMs + maxIntervalMs + slackMs;
+    }
+
+    /**
+     * Widen or restore refresh intervals from each tenant's recent write rate
+     */
+    void check() {
+        long now = System.currentTimeMillis();
+        for (TenantState state : tenants.values()) {
+            try {
+                long elapsedMs = Math.max(1, now - state.lastCheckMs);
+                double docsPerSecond = state.docsSinceCheck.getAndSet(0) * 1000.0 / elapsedMs;
+                state.lastCheckMs = now;
+                if (docsPerSecond >= burstDocsPerSecond) {
+                    if (state.burstStartMs == 0) {
+                        state.burstStartMs = now;
+                    }
+                    state.lastBurstMs = now;
+                } else {
+                    state.burstStartMs = 0;
+                }
+
+                if (adaptive && !state.widened && state.burstStartMs > 0 && now - state.burstStartMs >= burstAfterMs) {
+                    widen(state);
+                } else if (state.widened && now - state.lastBurstMs >= quietAfterMs) {
+                    restore(state);
+                } else if (!state.widened && now - state.lastWriteMs.get() >= quietAfterMs && isSettled(state.tenantId)) {
+                    retire(state);
+                }
+            } catch (IOException | RuntimeException e) {
+                // Keep the schedule alive; the next check retries
+                log.warn("Refresh check failed for tenant {}: {}", state.tenantId, e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Drop the state of a quiet, settled tenant unless a write races in
+     *
+     * The state is marked retired before lastWriteMs is read again, and
+     * recordWrite reads retired after updating lastWriteMs, so either this
+     * sees the write and keeps the state or the writer sees the mark and
+     * records into a fresh one.
+     */
+    private void retire(TenantState state) {
+        tenants.computeIfPresent(state.tenantId, (tenantId, current) -> {
+            if (current != state) {
+                return current;
+            }
+            long lastWriteMs = state.lastWriteMs.get();
+            state.retired = true;
+            if (state.lastWriteMs.get() != lastWriteMs || !isVisible(state, lastWriteMs)) {
+                state.retired = false;
+                return state;
+            }
+            return null;
+        });
+    }
+
+    private void widen(TenantState state) throws IOException {
+        TenantIndexRegistry.TenantPlacement placement = indexRegistry.knownPlacement(state.tenantId);
+        if (placement == null || placement.shared()) {
+            return;
+        }
+        // Only the write index takes the burst; older indices of a rollover series keep theirs
+        String index = placement.index();
+        String original = refreshInterval(index);
+        if (DISABLED.equals(original)) {
+            // Refresh is off, e.g. for an import job, which restores it when it finishes
+            state.burstStartMs = 0;
+            return;
+        }
+        setRefreshInterval(index, burstIntervalMs + "ms");
+        state.widenedIndex = index;
+        state.originalInterval = original != null ? original : baseIntervalMs + "ms";
+        state.widened = true;
+        log.info("Tenant {} is ingesting in bursts, refresh_interval of {} widened to {}ms",
+                state.tenantId, index, burstIntervalMs);
+    }
+
+    private void restore(TenantState state) throws IOException {
+        String index = state.widenedIndex;
+        try {
+            String current = refreshInterval(index);
+            if (DISABLED.equals(current)) {
+                // An import job started meanwhile and will put the burst interval back; look again later
+                state.lastBurstMs = System.currentTimeMillis();
+                return;
+            }
+            // Otherwise whoever changed it since owns the setting now
+            if ((burstIntervalMs + "ms").equals(current)) {
+                setRefreshInterval(index, state.originalInterval);
+            }
+        } catch (ElasticsearchException e) {
+            if (!TenantIndexRegistry.isIndexNotFound(e)) {
+                throw e;
+            }
+        }
+        // Make the burst visible now rather than at the end of the wide interval
+        long refreshStart = System.currentTimeMillis();
+        elasticsearchClient.indices().refresh(r -> r.index(TenantIndexRegistry.targetName(state.tenantId)));
+        state.refreshed(refreshStart);
+        state.widened = false;
+        log.info("Tenant {} ingestion is quiet, refresh_interval of {} restored to {}",
+                state.tenantId, index, state.originalInterval);
+    }
+
+    /**
+     * The index's own refresh_interval, or null if it has none
+     */
+    private String refreshInterval(String index) throws IOException {
+        IndexSettings settings = elasticsearchClient.indices()
+            .getSettings(g -> g.index(index))
+            .get(index).settings().index();
+        return settings != null && settings.refreshInterval() != null ? settings.refreshInterval().time() : null;
+    }
+
+    private void setRefreshInterval(String index, String interval) throws IOException {
+        elasticsearchClient.indices().putSettings(p -> p
+            .index(index)
+            .settings(s -> s.refreshInterval(t -> t.time(interval)))
+        );
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    // Helper classes
+
+    private final class TenantState {
+        private final String tenantId;
+        private final AtomicLong docsSinceCheck = new AtomicLong();
+        private final AtomicLong lastWriteMs = new AtomicLong();
+        private volatile long lastRefreshStartMs;
+        private volatile boolean widened;
+        private volatile boolean retired;
+        private String widenedIndex;
+        private String originalInterval;
+        private long lastCheckMs = System.currentTimeMillis();
+        private long burstStartMs;
+        private long lastBurstMs;
+        private CompletableFuture<Void> inFlight;
+        private long inFlightStartMs;
+
+        private TenantState(String tenantId) {
+            this.tenantId = tenantId;
+        }
+
+        /**
+         * Join a refresh that started after writeMs, or start one
+         *
+         * A refresh started by this call follows the acknowledged write, so
+         * its own millisecond needs no such care.
+         */
+        synchronized CompletableFuture<Void> refreshCovering(long writeMs) {
+            if (inFlight != null && inFlightStartMs > writeMs) {
+                return inFlight;
+            }
+            long startMs = System.currentTimeMillis();
+            forcedRefreshes.increment();
+            CompletableFuture<Void> refresh = elasticsearchAsyncClient.indices()
+                .refresh(r -> r.index(TenantIndexRegistry.targetName(tenantId)))
+                .handle((response, error) -> {
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                        // Searching anyway beats failing the read over a missed refresh
+                        if (!(cause instanceof ElasticsearchException ee && TenantIndexRegistry.isIndexNotFound(ee))) {
+                            log.warn("Refresh for tenant {} failed: {}", tenantId, cause.getMessage());
+                        }
+                    } else {
+                        refreshed(startMs);
+                    }
+                    return null;
+                });
+            inFlight = refresh;
+            inFlightStartMs = startMs;
+            return refresh;
+        }
+
+        synchronized void refreshed(long startMs) {
+            lastRefreshStartMs = Math.max(lastRefreshStartMs, startMs);
+        }
+    }
+}
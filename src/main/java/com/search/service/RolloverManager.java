@@ -0,0 +1,274 @@
+package com.search.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Conflicts;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.DeleteByQueryRequest;
+import co.elastic.clients.elasticsearch.core.DeleteByQueryResponse;
+import co.elastic.clients.elasticsearch.indices.AliasDefinition;
+import co.elastic.clients.elasticsearch.indices.RolloverResponse;
+import co.elastic.clients.elasticsearch.indices.get_alias.IndexAliases;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rolls rollover tenants over to a fresh write index when the current one is full
+ *
+ * Every check-interval, each write index of a search-rollover-* series is
+ * rolled over once it is older than max-age, holds max-docs documents or
+ * has a primary shard past max-primary-shard-size. Elasticsearch moves
+ * the write flag to the new index in the same step, so ingestion never
+ * pauses. The index that stopped taking writes is then force-merged in
+ * the background, if enabled.
+ *
+ * Writes by id only reach the write index, so the series is kept free of
+ * duplicates by queries rather than blocks:
+ * - Rewriting an id lands a new copy in the write index; the copies in
+ *   the indices before it are then deleted
+ * - Deleting an id deletes every copy across the series
+ * Old indices are left writable so both can reach them.
+ */
+@Slf4j
+@Component
+public class RolloverManager {
+
+    private static final int SUFFIX_DIGITS = 6;
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final ElasticsearchAsyncClient elasticsearchAsyncClient;
+    private final TenantIndexRegistry indexRegistry;
+    private final Duration maxAge;
+    private final long maxDocs;
+    private final String maxPrimaryShardSize;
+    private final long forceMergeSegments;
+    private final ScheduledExecutorService scheduler;
+
+    public RolloverManager(
+            ElasticsearchClient elasticsearchClient,
+            ElasticsearchAsyncClient elasticsearchAsyncClient,
+            TenantIndexRegistry indexRegistry,
+            @Value("${search.rollover.max-age:7d}") Duration maxAge,
+            @Value("${search.rollover.max-docs:50000000}") long maxDocs,
+            @Value("${search.rollover.max-primary-shard-size:50gb}") String maxPrimaryShardSize,
+            @Value("${search.rollover.force-merge-segments:1}") long forceMergeSegments,
+            @Value("${search.rollover.check-interval:10m}") Duration checkInterval) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.elasticsearchAsyncClient = elasticsearchAsyncClient;
+        this.indexRegistry = indexRegistry;
+        this.maxAge = maxAge;
+        this.maxDocs = maxDocs;
+        this.maxPrimaryShardSize = maxPrimaryShardSize;
+        this.forceMergeSegments = forceMergeSegments;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rollover-manager");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::checkForRollovers,
+                checkInterval.toMillis(), checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    void checkForRollovers() {
+        try {
+            for (String alias : writeAliases()) {
+                try {
+                    rollover(alias);
+                } catch (IOException | ElasticsearchException e) {
+                    // One tenant failing shouldn't hold up the others
+                    log.warn("Rollover of {} failed: {}", alias, e.getMessage(), e);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Keep the schedule alive; the next check retries
+            log.warn("Rollover check failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Aliases that currently have a write index in a rollover series
+     */
+    private List<String> writeAliases() throws IOException {
+        Map<String, IndexAliases> indices = elasticsearchClient.indices()
+            .getAlias(g -> g.index(TenantIndexRegistry.ROLLOVER_PATTERN))
+            .result();
+        List<String> aliases = new ArrayList<>();
+        for (IndexAliases indexAliases : indices.values()) {
+            for (Map.Entry<String, AliasDefinition> alias : indexAliases.aliases().entrySet()) {
+                if (Boolean.TRUE.equals(alias.getValue().isWriteIndex())) {
+                    aliases.add(alias.getKey());
+                }
+            }
+        }
+        return aliases;
+    }
+
+    void rollover(String alias) throws IOException {
+        RolloverResponse response = elasticsearchClient.indices().rollover(r -> r
+            .alias(alias)
+            .conditions(c -> c
+                .maxAge(t -> t.time(maxAge.toSeconds() + "s"))
+                .maxDocs(maxDocs)
+                .maxPrimaryShardSize(maxPrimaryShardSize)
+            )
+        );
+        if (!response.rolledOver()) {
+            return;
+        }
+
+        String oldIndex = response.oldIndex();
+        log.info("Rolled {} over from {} to {}", alias, oldIndex, response.newIndex());
+        indexRegistry.invalidateTarget(alias);
+
+        // No write block: deletes and rewrites still have to reach the old index
+        if (forceMergeSegments > 0) {
+            // Runs as a task; fewer segments make searches over old data cheaper
+            elasticsearchClient.indices().forcemerge(f -> f
+                .index(oldIndex)
+                .maxNumSegments(forceMergeSegments)
+                .waitForCompletion(false)
+            );
+        }
+    }
+
+    /**
+     * Delete every copy of the documents across the tenant's series
+     *
+     * @param refresh make the deletes visible before returning
+     */
+    public DeleteByQueryResponse deleteAllCopies(String tenantId, List<String> docIds, boolean refresh)
+            throws IOException {
+        return elasticsearchClient.deleteByQuery(d -> d
+            .index(TenantIndexRegistry.targetName(tenantId))
+            .query(q -> q.ids(i -> i.values(docIds)))
+            .conflicts(Conflicts.Proceed)
+            .refresh(refresh)
+        );
+    }
+
+    /**
+     * Delete the copies of just-written documents from the indices before the one they landed in
+     *
+     * Only strictly older indices are touched, so a copy written after a
+     * rollover that raced this write is never the one removed.
+     *
+     * @param writtenIndex index the write response reported
+     * @param refresh      make the deletes visible before returning
+     */
+    public void deleteOlderCopies(String tenantId, String writtenIndex, List<String> docIds, boolean refresh)
+            throws IOException {
+        List<String> older = olderIndices(writtenIndex);
+        if (!older.isEmpty()) {
+            elasticsearchClient.deleteByQuery(olderCopiesRequest(tenantId, older, docIds, refresh));
+        }
+    }
+
+    /**
+     * Delete older copies of everything a bulk wrote
+     *
+     * The writes are already acknowledged, so a failure is logged and the
+     * older copies stay until the ids are written or deleted again.
+     */
+    public void deleteOlderCopies(WrittenCopies written, boolean refresh) {
+        written.ids.forEach((tenantId, byIndex) -> byIndex.forEach((index, docIds) -> {
+            try {
+                deleteOlderCopies(tenantId, index, docIds, refresh);
+            } catch (IOException | ElasticsearchException e) {
+                log.error("Deleting older copies of {} documents of tenant {} failed: {}",
+                        docIds.size(), tenantId, e.getMessage(), e);
+            }
+        }));
+    }
+
+    /**
+     * {@link #deleteOlderCopies} without blocking the calling thread
+     */
+    public CompletableFuture<Void> deleteOlderCopiesAsync(String tenantId, String writtenIndex, List<String> docIds,
+                                                          boolean refresh) {
+        List<String> older = olderIndices(writtenIndex);
+        if (older.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return elasticsearchAsyncClient.deleteByQuery(olderCopiesRequest(tenantId, older, docIds, refresh))
+            .thenApply(response -> null);
+    }
+
+    private static DeleteByQueryRequest olderCopiesRequest(String tenantId, List<String> olderIndices,
+                                                           List<String> docIds, boolean refresh) {
+        return DeleteByQueryRequest.of(d -> d
+            .index(TenantIndexRegistry.targetName(tenantId))
+            .query(q -> q.bool(b -> b
+                .filter(Query.of(f -> f.ids(i -> i.values(docIds))))
+                .filter(Query.of(f -> f.terms(t -> t
+                    .field("_index")
+                    .terms(v -> v.value(olderIndices.stream().map(FieldValue::of).toList()))
+                )))
+            ))
+            .conflicts(Conflicts.Proceed)
+            .refresh(refresh)
+        );
+    }
+
+    /**
+     * Indices of a series created before this one; rollover increments the six-digit suffix
+     *
+     * @return empty for the first index, or a name outside a rollover series
+     */
+    static List<String> olderIndices(String index) {
+        int dash = index.lastIndexOf('-');
+        if (!index.startsWith(TenantIndexRegistry.ROLLOVER_PREFIX)
+                || dash < 0 || index.length() - dash - 1 != SUFFIX_DIGITS) {
+            return List.of();
+        }
+        int generation;
+        try {
+            generation = Integer.parseInt(index.substring(dash + 1));
+        } catch (NumberFormatException e) {
+            return List.of();
+        }
+        String prefix = index.substring(0, dash + 1);
+        List<String> older = new ArrayList<>(Math.max(0, generation - 1));
+        for (int i = 1; i < generation; i++) {
+            older.add(prefix + String.format("%0" + SUFFIX_DIGITS + "d", i));
+        }
+        return older;
+    }
+
+    /**
+     * Documents of rollover tenants and the index each landed in, collected from the bulk threads
+     */
+    public static final class WrittenCopies {
+
+        private final Map<String, Map<String, List<String>>> ids = new ConcurrentHashMap<>();
+
+        public void add(String tenantId, String index, String docId) {
+            if (olderIndices(index).isEmpty()) {
+                return;
+            }
+            ids.computeIfAbsent(tenantId, t -> new ConcurrentHashMap<>())
+                .computeIfAbsent(index, i -> Collections.synchronizedList(new ArrayList<>()))
+                .add(docId);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,144 @@
+package com.search.service;
+
+import com.search.model.FacetRequest;
+import com.search.model.SearchFilters;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight execution of identical concurrent searches
+ *
+ * The first search for a key goes to the cluster; identical searches that
+ * arrive while it is in flight wait for it and share its response instead
+ * of sending their own. The key includes the tenant's write generation,
+ * which moves when a write is acknowledged, not when it becomes visible.
+ * Callers therefore only coalesce while RefreshManager reports the tenant
+ * settled: a call in flight then started with every write up to its
+ * generation visible, and a later search with the same generation has no
+ * newer write to miss. While any acknowledged write may still be
+ * invisible, searches run on their own.
+ *
+ * Callers that joined get a copy with stats.coalesced set.
+ *
+ * - search.coalescing.executed: searches that went to the cluster
+ * - search.coalescing.joined: searches that shared an in-flight call
+ * - search.coalescing.ratio: joined / (executed + joined)
+ */
+@Component
+public class SearchCoalescer {
+
+    private final boolean enabled;
+    private final Map<Key, CompletableFuture<ElasticsearchSearchService.SearchResponse>> inFlight =
+            new ConcurrentHashMap<>();
+    private final Counter executed;
+    private final Counter joined;
+
+    public SearchCoalescer(
+            MeterRegistry meterRegistry,
+            @Value("${search.coalescing.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+        this.executed = meterRegistry.counter("search.coalescing.executed");
+        this.joined = meterRegistry.counter("search.coalescing.joined");
+        Gauge.builder("search.coalescing.ratio", this, SearchCoalescer::ratio)
+                .description("Share of searches served by another caller's in-flight call")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Run a blocking search, or wait for an identical one already running
+     *
+     * The search must report failures in its response rather than throw;
+     * an exception is passed on to every caller sharing the call.
+     */
+    public ElasticsearchSearchService.SearchResponse execute(
+            String tenantId, long generation, String queryText, int topK, List<String> fields,
+            SearchFilters filters, FacetRequest facets, Supplier<ElasticsearchSearchService.SearchResponse> search) {
+        if (!enabled) {
+            return search.get();
+        }
+        Key key = new Key(tenantId, generation, SearchResultCache.normalize(queryText), topK, fields, filters, facets);
+        CompletableFuture<ElasticsearchSearchService.SearchResponse> call = new CompletableFuture<>();
+        CompletableFuture<ElasticsearchSearchService.SearchResponse> running = inFlight.putIfAbsent(key, call);
+        if (running != null) {
+            joined.increment();
+            return shared(running.join());
+        }
+
+        executed.increment();
+        try {
+            ElasticsearchSearchService.SearchResponse response = search.get();
+            inFlight.remove(key, call);
+            call.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            inFlight.remove(key, call);
+            call.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Start a non-blocking search, or share the future of an identical one already running
+     */
+    public CompletableFuture<ElasticsearchSearchService.SearchResponse> executeAsync(
+            String tenantId, long generation, String queryText, int topK, List<String> fields,
+            SearchFilters filters, FacetRequest facets,
+            Supplier<CompletableFuture<ElasticsearchSearchService.SearchResponse>> search) {
+        if (!enabled) {
+            return search.get();
+        }
+        Key key = new Key(tenantId, generation, SearchResultCache.normalize(queryText), topK, fields, filters, facets);
+        CompletableFuture<ElasticsearchSearchService.SearchResponse> call = new CompletableFuture<>();
+        CompletableFuture<ElasticsearchSearchService.SearchResponse> running = inFlight.putIfAbsent(key, call);
+        if (running != null) {
+            joined.increment();
+            return running.thenApply(SearchCoalescer::shared);
+        }
+
+        executed.increment();
+        CompletableFuture<ElasticsearchSearchService.SearchResponse> future;
+        try {
+            future = search.get();
+        } catch (RuntimeException e) {
+            inFlight.remove(key, call);
+            call.completeExceptionally(e);
+            throw e;
+        }
+        future.whenComplete((response, error) -> {
+            // Leave the map first so late arrivals start a fresh call
+            inFlight.remove(key, call);
+            if (error != null) {
+                call.completeExceptionally(error);
+            } else {
+                call.complete(response);
+            }
+        });
+        return call;
+    }
+
+    private static ElasticsearchSearchService.SearchResponse shared(ElasticsearchSearchService.SearchResponse response) {
+        return new ElasticsearchSearchService.SearchResponse(response.getResults(),
+                response.getStats().toBuilder().coalesced(true).build(), response.getFacets());
+    }
+
+    double ratio() {
+        double total = executed.count() + joined.count();
+        return total > 0 ? joined.count() / total : 0.0;
+    }
+
+    /**
+     * Fields are expected in canonical (sorted, distinct) order
+     */
+    private record Key(String tenantId, long generation, String query, int topK, List<String> fields,
+                       SearchFilters filters, FacetRequest facets) {
+    }
+}
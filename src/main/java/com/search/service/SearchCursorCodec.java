@@ -0,0 +1,133 @@
+package com.search.service;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.search.model.SearchFilters;
+import com.search.security.SigningKeys;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Opaque, signed pagination cursors
+ *
+ * A cursor carries the PIT id, the sort values of the last hit and the
+ * original query. It is signed so a client can neither edit it nor use a
+ * PIT that belongs to another tenant. The key is derived from the secret
+ * for cursors only.
+ */
+@Component
+public class SearchCursorCodec {
+
+    private static final String HMAC = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final ObjectMapper objectMapper;
+    private final SecretKeySpec key;
+
+    public SearchCursorCodec(
+            ObjectMapper objectMapper,
+            @Value("${search.pit.cursor-secret:${jwt.secret}}") String secret) {
+        this.objectMapper = objectMapper;
+        this.key = SigningKeys.derive(secret, "search-cursor");
+    }
+
+    public String encode(Cursor cursor) {
+        try {
+            byte[] payload = objectMapper.writeValueAsBytes(cursor);
+            return ENCODER.encodeToString(payload) + "." + ENCODER.encodeToString(sign(payload));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode cursor", e);
+        }
+    }
+
+    /**
+     * Verify and read a cursor issued to this tenant
+     *
+     * @throws InvalidCursorException if it is malformed, tampered with or another tenant's
+     */
+    public Cursor decode(String token, String tenantId) {
+        int dot = token.indexOf('.');
+        if (dot < 0) {
+            throw new InvalidCursorException();
+        }
+        try {
+            byte[] payload = DECODER.decode(token.substring(0, dot));
+            byte[] signature = DECODER.decode(token.substring(dot + 1));
+            if (!MessageDigest.isEqual(signature, sign(payload))) {
+                throw new InvalidCursorException();
+            }
+            Cursor cursor = objectMapper.readValue(payload, Cursor.class);
+            if (!tenantId.equals(cursor.tenantId())) {
+                throw new InvalidCursorException();
+            }
+            return cursor;
+        } catch (IllegalArgumentException | IOException e) {
+            throw new InvalidCursorException();
+        }
+    }
+
+    private byte[] sign(byte[] payload) {
+        try {
+            // Mac instances are not thread-safe
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(key);
+            return mac.doFinal(payload);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+
+    /**
+     * Sort values as plain JSON scalars
+     */
+    public static List<Object> toJson(List<FieldValue> sortValues) {
+        List<Object> values = new ArrayList<>(sortValues.size());
+        for (FieldValue value : sortValues) {
+            values.add(value._get());
+        }
+        return values;
+    }
+
+    public static List<FieldValue> toFieldValues(List<Object> values) {
+        List<FieldValue> fieldValues = new ArrayList<>(values.size());
+        for (Object value : values) {
+            if (value instanceof Integer || value instanceof Long) {
+                fieldValues.add(FieldValue.of(((Number) value).longValue()));
+            } else if (value instanceof Number number) {
+                fieldValues.add(FieldValue.of(number.doubleValue()));
+            } else if (value instanceof Boolean bool) {
+                fieldValues.add(FieldValue.of(bool));
+            } else {
+                fieldValues.add(FieldValue.of(String.valueOf(value)));
+            }
+        }
+        return fieldValues;
+    }
+
+    /**
+     * Cursor contents
+     *
+     * @param searchAfter sort values of the last hit served
+     */
+    public record Cursor(String tenantId, String pitId, String query, int size,
+                         List<String> fields, SearchFilters filters, List<Object> searchAfter) {
+    }
+
+    public static class InvalidCursorException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public InvalidCursorException() {
+            super("Invalid cursor");
+        }
+    }
+}
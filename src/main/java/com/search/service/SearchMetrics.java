@@ -0,0 +1,164 @@
+package com.search.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer timers for service operations and search phases
+ *
+ * - search.requests{operation, tenant, outcome}: end-to-end time per operation and tenant
+ * - search.latency{operation, outcome}: the same time without the tenant, for percentiles
+ * - search.phase{operation, phase}: where a search spends its time
+ * - search.documents.indexed: documents accepted by Elasticsearch
+ *
+ * Histogram buckets and SLO boundaries come from management.metrics.distribution
+ * and are only configured for the tenant-less timers: buckets for every
+ * tenant x operation x outcome would be thousands of series per instance.
+ * Only the first max-tenant-tags tenants get their own tag value; the rest
+ * share "other" so the series count stays bounded.
+ */
+@Component
+public class SearchMetrics {
+
+    public static final String REQUESTS = "search.requests";
+    public static final String LATENCY = "search.latency";
+    public static final String PHASES = "search.phase";
+
+    public static final String SUCCESS = "success";
+    public static final String CACHED = "cached";
+    public static final String COALESCED = "coalesced";
+    public static final String NOT_FOUND = "not_found";
+    public static final String PARTIAL = "partial";
+    public static final String ERROR = "error";
+
+    private static final String OTHER_TENANT = "other";
+
+    public enum Operation {
+        SEARCH,
+        MULTI_SEARCH,
+        SEARCH_PAGE,
+        INDEX,
+        BULK,
+        GET,
+        MULTI_GET,
+        DELETE,
+        BULK_DELETE,
+        DELETE_BY_QUERY,
+        STATS,
+        EXPORT;
+
+        String tag() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    public enum Phase {
+        /** Index existence check against the registry or cluster */
+        INDEX_CHECK,
+        /** Time Elasticsearch reports in took */
+        CLUSTER,
+        /** Client call time outside took: network, queueing and deserialization */
+        TRANSPORT,
+        /** Hits to response objects */
+        MAPPING;
+
+        String tag() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final int maxTenantTags;
+    private final Set<String> taggedTenants = ConcurrentHashMap.newKeySet();
+    private final Counter documentsIndexed;
+
+    public SearchMetrics(
+            MeterRegistry meterRegistry,
+            @Value("${search.metrics.max-tenant-tags:100}") int maxTenantTags) {
+        this.meterRegistry = meterRegistry;
+        this.maxTenantTags = maxTenantTags;
+        this.documentsIndexed = meterRegistry.counter("search.documents.indexed");
+    }
+
+    /**
+     * Record an operation that started at startNanos (System.nanoTime)
+     */
+    public void record(Operation operation, String tenantId, String outcome, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        meterRegistry.timer(REQUESTS,
+                "operation", operation.tag(),
+                "tenant", tenantTag(tenantId),
+                "outcome", outcome)
+            .record(nanos, TimeUnit.NANOSECONDS);
+        meterRegistry.timer(LATENCY, "operation", operation.tag(), "outcome", outcome)
+            .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordPhase(Operation operation, Phase phase, long nanos) {
+        meterRegistry.timer(PHASES, "operation", operation.tag(), "phase", phase.tag())
+            .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Split a client call into the cluster's own took and everything around it
+     */
+    public void recordClusterCall(Operation operation, long tookMs, long callNanos) {
+        long tookNanos = TimeUnit.MILLISECONDS.toNanos(tookMs);
+        recordPhase(operation, Phase.CLUSTER, tookNanos);
+        recordPhase(operation, Phase.TRANSPORT, Math.max(0, callNanos - tookNanos));
+    }
+
+    public void documentsIndexed(int count) {
+        documentsIndexed.increment(count);
+    }
+
+    public long documentsIndexed() {
+        return (long) documentsIndexed.count();
+    }
+
+    /**
+     * Operations recorded across all tenants and outcomes
+     */
+    public long count(Operation operation) {
+        return timers(operation).stream().mapToLong(Timer::count).sum();
+    }
+
+    /**
+     * Mean operation time across all tenants and outcomes
+     */
+    public double meanMs(Operation operation) {
+        Collection<Timer> timers = timers(operation);
+        long count = timers.stream().mapToLong(Timer::count).sum();
+        double totalMs = timers.stream().mapToDouble(t -> t.totalTime(TimeUnit.MILLISECONDS)).sum();
+        return count > 0 ? totalMs / count : 0.0;
+    }
+
+    private Collection<Timer> timers(Operation operation) {
+        return meterRegistry.find(REQUESTS).tag("operation", operation.tag()).timers();
+    }
+
+    String tenantTag(String tenantId) {
+        if (tenantId == null) {
+            return OTHER_TENANT;
+        }
+        if (taggedTenants.contains(tenantId)) {
+            return tenantId;
+        }
+        synchronized (taggedTenants) {
+            if (taggedTenants.size() < maxTenantTags) {
+                taggedTenants.add(tenantId);
+                return tenantId;
+            }
+        }
+        return taggedTenants.contains(tenantId) ? tenantId : OTHER_TENANT;
+    }
+}
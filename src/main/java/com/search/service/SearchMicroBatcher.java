@@ -0,0 +1,168 @@
+package com.search.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch.core.MsearchRequest;
+import co.elastic.clients.elasticsearch.core.msearch.MultiSearchResponseItem;
+import co.elastic.clients.elasticsearch.core.msearch.RequestItem;
+import co.elastic.clients.elasticsearch.core.search.ResponseBody;
+import com.search.model.SearchDocument;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server-side micro-batching of single searches into _msearch
+ *
+ * The first search to arrive opens a short window; searches that arrive
+ * before it closes (or until the batch is full) are sent together as one
+ * _msearch on the async client, and each caller gets its own item back.
+ */
+@Slf4j
+@Component
+public class SearchMicroBatcher {
+
+    private final ElasticsearchAsyncClient elasticsearchAsyncClient;
+    private final boolean enabled;
+    private final long windowNanos;
+    private final int maxBatchSize;
+
+    private final BlockingQueue<PendingSearch> queue = new LinkedBlockingQueue<>();
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    public SearchMicroBatcher(
+            ElasticsearchAsyncClient elasticsearchAsyncClient,
+            @Value("${search.micro-batch.enabled:false}") boolean enabled,
+            @Value("${search.micro-batch.window:300us}") Duration window,
+            @Value("${search.micro-batch.max-batch-size:32}") int maxBatchSize) {
+        this.elasticsearchAsyncClient = elasticsearchAsyncClient;
+        this.enabled = enabled;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+
+        if (enabled) {
+            this.dispatcher = new Thread(this::dispatchLoop, "search-micro-batcher");
+            this.dispatcher.setDaemon(true);
+            this.dispatcher.start();
+            log.info("Search micro-batching enabled: window={}, maxBatchSize={}", window, maxBatchSize);
+        } else {
+            this.dispatcher = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queue a search for the next _msearch
+     *
+     * @return future completing with the search's own response, or exceptionally
+     *         with an ElasticsearchException if that item failed
+     */
+    public CompletableFuture<ResponseBody<SearchDocument>> submit(RequestItem requestItem) {
+        PendingSearch pending = new PendingSearch(requestItem);
+        if (!running) {
+            pending.future.completeExceptionally(new IllegalStateException("Micro-batcher is shut down"));
+        } else {
+            queue.add(pending);
+        }
+        return pending.future;
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            try {
+                PendingSearch first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                List<PendingSearch> batch = new ArrayList<>(maxBatchSize);
+                batch.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    PendingSearch next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                dispatch(batch);
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void dispatch(List<PendingSearch> batch) {
+        MsearchRequest.Builder requestBuilder = new MsearchRequest.Builder();
+        for (PendingSearch pending : batch) {
+            requestBuilder.searches(pending.requestItem);
+        }
+
+        log.trace("Dispatching _msearch with {} searches", batch.size());
+
+        elasticsearchAsyncClient.msearch(requestBuilder.build(), SearchDocument.class)
+            .whenComplete((response, error) -> {
+                if (error != null) {
+                    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                    batch.forEach(p -> p.future.completeExceptionally(cause));
+                    return;
+                }
+
+                // Responses come back in request order
+                List<MultiSearchResponseItem<SearchDocument>> items = response.responses();
+                for (int i = 0; i < batch.size(); i++) {
+                    MultiSearchResponseItem<SearchDocument> item = items.get(i);
+                    if (item.isResult()) {
+                        batch.get(i).future.complete(item.result());
+                    } else {
+                        batch.get(i).future.completeExceptionally(
+                            new ElasticsearchException("msearch", item.failure()));
+                    }
+                }
+            });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        dispatcher.interrupt();
+
+        List<PendingSearch> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            dispatch(remaining);
+        }
+    }
+
+    private static final class PendingSearch {
+        private final RequestItem requestItem;
+        private final CompletableFuture<ResponseBody<SearchDocument>> future = new CompletableFuture<>();
+
+        private PendingSearch(RequestItem requestItem) {
+            this.requestItem = requestItem;
+        }
+    }
+}
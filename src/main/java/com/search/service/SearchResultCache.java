@@ -0,0 +1,123 @@
+package com.search.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.search.model.FacetRequest;
+import com.search.model.SearchFilters;
+import com.search.model.SearchResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * In-process cache of search responses per tenant
+ *
+ * Entries are keyed by the tenant's write generation, so any write to a
+ * tenant makes its earlier entries unreachable; they age out through the
+ * weight bound and TTL instead of being scanned and removed.
+ *
+ * A tenant's generation is dropped once unused for longer than the TTL
+ * plus a margin. By then every entry cached under it has expired, so the
+ * count restarting from zero can't bring a stale entry back.
+ */
+@Slf4j
+@Component
+public class SearchResultCache {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    // Covers a search that read the generation just before the TTL ran out
+    private static final Duration GENERATION_MARGIN = Duration.ofMinutes(1);
+
+    private final boolean enabled;
+    private final Cache<Key, ElasticsearchSearchService.SearchResponse> cache;
+    private final Cache<String, AtomicLong> generations;
+
+    public SearchResultCache(
+            MeterRegistry meterRegistry,
+            @Value("${search.result-cache.enabled:true}") boolean enabled,
+            @Value("${search.result-cache.max-weight:100000}") long maxWeight,
+            @Value("${search.result-cache.ttl:30s}") Duration ttl) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((Key key, ElasticsearchSearchService.SearchResponse value) -> weigh(value))
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "search.results");
+        this.generations = Caffeine.newBuilder()
+                .expireAfterAccess(ttl.plus(GENERATION_MARGIN))
+                .build();
+    }
+
+    /**
+     * Current write generation of a tenant; read it before querying the cluster
+     */
+    public long generation(String tenantId) {
+        AtomicLong generation = generations.getIfPresent(tenantId);
+        return generation != null ? generation.get() : 0L;
+    }
+
+    /**
+     * Mark all cached results of a tenant as stale; call after a write is visible
+     */
+    public void invalidateTenant(String tenantId) {
+        generations.get(tenantId, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    public ElasticsearchSearchService.SearchResponse get(String tenantId, long generation,
+                                                         String queryText, int topK, List<String> fields,
+                                                         SearchFilters filters, FacetRequest facets) {
+        if (!enabled) {
+            return null;
+        }
+        return cache.getIfPresent(new Key(tenantId, generation, normalize(queryText), topK, fields, filters, facets));
+    }
+
+    public void put(String tenantId, long generation, String queryText, int topK, List<String> fields,
+                    SearchFilters filters, FacetRequest facets, ElasticsearchSearchService.SearchResponse response) {
+        if (!enabled) {
+            return;
+        }
+        cache.put(new Key(tenantId, generation, normalize(queryText), topK, fields, filters, facets), response);
+    }
+
+    /**
+     * Case and whitespace differences don't change a match query on the standard analyzer
+     */
+    static String normalize(String queryText) {
+        return WHITESPACE.matcher(queryText.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Approximate weight: one unit per result plus one per 100 snippet or content characters,
+     * and one per facet bucket
+     */
+    private static int weigh(ElasticsearchSearchService.SearchResponse response) {
+        int weight = 1;
+        for (SearchResult result : response.getResults()) {
+            int snippetLength = result.getSnippet() != null ? result.getSnippet().length() : 0;
+            int contentLength = result.getContent() != null ? result.getContent().length() : 0;
+            weight += 1 + (snippetLength + contentLength) / 100;
+        }
+        for (List<ElasticsearchSearchService.FacetBucket> buckets : response.getFacets().values()) {
+            weight += buckets.size();
+        }
+        return weight;
+    }
+
+    /**
+     * Fields are expected in canonical (sorted, distinct) order
+     */
+    private record Key(String tenantId, long generation, String query, int topK, List<String> fields,
+                       SearchFilters filters, FacetRequest facets) {
+    }
+}
@@ -0,0 +1,267 @@
+package com.search.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Conflicts;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.VersionType;
+import co.elastic.clients.elasticsearch._types.aggregations.StringTermsBucket;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.indices.stats.IndexStats;
+import co.elastic.clients.json.JsonData;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves tenants that outgrow the shared indices into dedicated ones
+ *
+ * Every check-interval, tenants over promote-docs documents, or over
+ * promote-bytes at the shared indices' average document size, are promoted:
+ * 1. Create search-tenant-{tenant}; if it already exists another instance
+ *    is promoting the tenant and this one backs off
+ * 2. Reindex the tenant's documents into it, dropping the shared routing
+ *    and the tenant prefix of their _ids
+ * 3. Swap the tenant's alias over in one atomic alias update
+ * 4. Reindex again with external versions to pick up writes made during
+ *    step 2, then delete the tenant's documents from the shared index
+ *
+ * A document deleted while step 2 runs comes back in step 4.
+ *
+ * Other instances keep the shared placement cached for up to the registry
+ * TTL after step 3, and write-behind buffers and bulks in flight hold it
+ * too. Their writes reach the new index with the tenant's routing and
+ * prefixed ids, so until the TTL has passed the new index runs a default
+ * pipeline that strips both. Gets and deletes through a stale placement
+ * miss and look the placement up again (see TenantIndexRegistry#reload).
+ */
+@Slf4j
+@Component
+public class SharedIndexPromoter {
+
+    private static final int MAX_PROMOTIONS_PER_CHECK = 10;
+    private static final String STRIP_ID_PREFIX =
+        "if (ctx._id.startsWith(params.prefix)) { ctx._id = ctx._id.substring(params.prefix.length()) }";
+    // Only writes through the shared placement carry routing; the index's own never do
+    private static final String STRIP_STALE_WRITE = "if (ctx._routing != null && ctx._id.startsWith(params.prefix)) "
+        + "{ ctx._id = ctx._id.substring(params.prefix.length()); ctx._routing = null }";
+    // Stale placements may also sit in bulks being retried when the TTL runs out
+    private static final Duration GRACE_MARGIN = Duration.ofMinutes(1);
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final TenantIndexRegistry indexRegistry;
+    private final SearchResultCache resultCache;
+    private final long promoteDocs;
+    private final long promoteBytes;
+    private final Duration placementTtl;
+    private final ScheduledExecutorService scheduler;
+
+    public SharedIndexPromoter(
+            ElasticsearchClient elasticsearchClient,
+            TenantIndexRegistry indexRegistry,
+            SearchResultCache resultCache,
+            @Value("${search.placement.promote-docs:100000}") long promoteDocs,
+            @Value("${search.placement.promote-bytes:1073741824}") long promoteBytes,
+            @Value("${search.placement.check-interval:5m}") Duration checkInterval,
+            @Value("${search.index-registry.ttl:10m}") Duration placementTtl) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.indexRegistry = indexRegistry;
+        this.resultCache = resultCache;
+        this.promoteDocs = promoteDocs;
+        this.promoteBytes = promoteBytes;
+        this.placementTtl = placementTtl;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "shared-index-promoter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::checkForPromotions,
+                checkInterval.toMillis(), checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    void checkForPromotions() {
+        try {
+            long threshold = docThreshold();
+            if (threshold <= 0) {
+                return;
+            }
+
+            // min_doc_count leaves only the tenants over the threshold
+            var response = elasticsearchClient.search(s -> s
+                .index(TenantIndexRegistry.SHARED_PATTERN)
+                .size(0)
+                .aggregations("tenants", a -> a.terms(t -> t
+                    .field("tenant_id")
+                    .minDocCount((int) Math.min(threshold, Integer.MAX_VALUE))
+                    .size(MAX_PROMOTIONS_PER_CHECK)
+                )),
+                Void.class);
+
+            List<StringTermsBucket> tenants = response.aggregations().get("tenants").sterms().buckets().array();
+            for (StringTermsBucket bucket : tenants) {
+                promote(bucket.key().stringValue(), bucket.docCount());
+            }
+        } catch (IOException | RuntimeException e) {
+            // Keep the schedule alive; the next check retries
+            log.warn("Shared index promotion check failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Documents a tenant may hold in a shared index, from both limits
+     *
+     * @return 0 if there are no shared documents to check
+     */
+    private long docThreshold() throws IOException {
+        IndexStats primaries = elasticsearchClient.indices()
+            .stats(s -> s.index(TenantIndexRegistry.SHARED_PATTERN))
+            .all().primaries();
+        long docs = primaries.docs() != null ? primaries.docs().count() : 0;
+        if (docs == 0) {
+            return 0;
+        }
+        long bytes = primaries.store() != null ? primaries.store().sizeInBytes() : 0;
+        long avgDocBytes = Math.max(1, bytes / docs);
+        return Math.max(1, Math.min(promoteDocs, promoteBytes / avgDocBytes));
+    }
+
+    void promote(String tenantId, long docCount) throws IOException {
+        TenantIndexRegistry.TenantPlacement placement = indexRegistry.placement(tenantId);
+        if (placement == null || !placement.shared()) {
+            log.warn("Tenant {} has {} documents left in shared indices but is not placed there", tenantId, docCount);
+            return;
+        }
+
+        String sharedIndex = placement.index();
+        String dedicatedIndex = TenantIndexRegistry.promotedIndexName(tenantId);
+        if (!indexRegistry.createIndex(dedicatedIndex, false)) {
+            log.warn("Not promoting tenant {}: {} already exists (promotion in progress or left from a failed one)",
+                    tenantId, dedicatedIndex);
+            return;
+        }
+
+        long startTime = System.nanoTime();
+        log.info("Promoting tenant {} ({} documents) from {} to {}", tenantId, docCount, sharedIndex, dedicatedIndex);
+        String pipeline = stripPipelineName(tenantId);
+        try {
+            installStripPipeline(tenantId, dedicatedIndex, pipeline);
+            copy(tenantId, sharedIndex, dedicatedIndex);
+        } catch (IOException | ElasticsearchException e) {
+            // Nothing reads from the copy yet, so it can go
+            elasticsearchClient.indices().delete(d -> d.index(dedicatedIndex));
+            try {
+                deletePipeline(pipeline);
+            } catch (ElasticsearchException notInstalled) {
+                log.debug("Promotion pipeline {} was not installed", pipeline);
+            }
+            throw e;
+        }
+
+        elasticsearchClient.indices().updateAliases(u -> u
+            .actions(a -> a.remove(r -> r.index(sharedIndex).alias(placement.target())))
+            .actions(a -> a.add(add -> add.index(dedicatedIndex).alias(placement.target())))
+        );
+        indexRegistry.invalidate(tenantId);
+        resultCache.invalidateTenant(tenantId);
+        scheduler.schedule(() -> removeStripPipeline(dedicatedIndex, pipeline),
+                placementTtl.plus(GRACE_MARGIN).toMillis(), TimeUnit.MILLISECONDS);
+
+        try {
+            copy(tenantId, sharedIndex, dedicatedIndex);
+            String task = elasticsearchClient.deleteByQuery(d -> d
+                .index(sharedIndex)
+                .routing(TenantIndexRegistry.routing(tenantId))
+                .query(tenantQuery(tenantId))
+                .conflicts(Conflicts.Proceed)
+                .waitForCompletion(false)
+            ).task();
+            ElasticsearchTasks.await(elasticsearchClient, task);
+        } catch (IOException | ElasticsearchException e) {
+            log.error("Tenant {} is served from {} but its documents may remain in {}: {}",
+                    tenantId, dedicatedIndex, sharedIndex, e.getMessage(), e);
+            return;
+        }
+        log.info("Promoted tenant {} to {} in {}ms", tenantId, dedicatedIndex, (System.nanoTime() - startTime) / 1_000_000);
+    }
+
+    /**
+     * Reindex a tenant's documents, keeping newer versions already in the destination
+     */
+    private void copy(String tenantId, String sourceIndex, String destIndex) throws IOException {
+        String prefix = TenantIndexRegistry.routing(tenantId) + TenantIndexRegistry.ID_SEPARATOR;
+        String task = elasticsearchClient.reindex(r -> r
+            .source(s -> s.index(sourceIndex).query(tenantQuery(tenantId)))
+            // A dedicated index holds one tenant, so documents go back to the client's id
+            .script(sc -> sc.inline(i -> i
+                .source(STRIP_ID_PREFIX)
+                .params("prefix", JsonData.of(prefix))
+            ))
+            // Dedicated indices are written without routing
+            .dest(d -> d.index(destIndex).versionType(VersionType.External).routing("discard"))
+            .conflicts(Conflicts.Proceed)
+            .refresh(true)
+            .waitForCompletion(false)
+        ).task();
+        ElasticsearchTasks.await(elasticsearchClient, task);
+    }
+
+    private static String stripPipelineName(String tenantId) {
+        return "search-promote-" + TenantIndexRegistry.routing(tenantId);
+    }
+
+    /**
+     * Make the new index the default pipeline that turns stale shared writes into its own
+     */
+    private void installStripPipeline(String tenantId, String index, String pipeline) throws IOException {
+        String prefix = TenantIndexRegistry.routing(tenantId) + TenantIndexRegistry.ID_SEPARATOR;
+        elasticsearchClient.ingest().putPipeline(p -> p
+            .id(pipeline)
+            .description("Strips the shared _id prefix and routing of writes promoted from a shared index")
+            .processors(pr -> pr.script(s -> s.inline(i -> i
+                .source(STRIP_STALE_WRITE)
+                .params("prefix", JsonData.of(prefix))
+            )))
+        );
+        elasticsearchClient.indices().putSettings(s -> s
+            .index(index)
+            .settings(st -> st.defaultPipeline(pipeline))
+        );
+    }
+
+    /**
+     * Once no instance can hold the shared placement any more, writes no longer need the pipeline
+     */
+    private void removeStripPipeline(String index, String pipeline) {
+        try {
+            elasticsearchClient.indices().putSettings(s -> s
+                .index(index)
+                .settings(st -> st.defaultPipeline("_none"))
+            );
+            deletePipeline(pipeline);
+            log.info("Removed promotion pipeline {} from {}", pipeline, index);
+        } catch (IOException | ElasticsearchException e) {
+            // Left in place it only costs a script per write
+            log.warn("Failed to remove promotion pipeline {} from {}: {}", pipeline, index, e.getMessage(), e);
+        }
+    }
+
+    private void deletePipeline(String pipeline) throws IOException {
+        elasticsearchClient.ingest().deletePipeline(d -> d.id(pipeline));
+    }
+
+    private static Query tenantQuery(String tenantId) {
+        return Query.of(q -> q.term(t -> t.field("tenant_id").value(tenantId)));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,225 @@
+package com.search.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.search.model.SearchDocument;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+/**
+ * Streaming NDJSON ingestion with bounded memory
+ *
+ * Documents are parsed one at a time from the request body and cut into
+ * bulk chunks by document count and payload bytes. At most a fixed number
+ * of chunks are in flight; once that limit is reached the reader blocks,
+ * which stops consuming the request body and pushes back on the client.
+ *
+ * Chunks of all streams share a fixed pool of bulk-threads, so concurrent
+ * streams queue for threads instead of each adding max-in-flight more. It
+ * is separate from BulkIndexer's pool, which a chunk waits on.
+ */
+@Slf4j
+@Service
+public class StreamingIngestService {
+
+    private final ElasticsearchSearchService searchService;
+    private final ObjectMapper objectMapper;
+    private final int chunkDocs;
+    private final long chunkBytes;
+    private final int maxInFlight;
+    private final ExecutorService bulkExecutor;
+
+    public StreamingIngestService(
+            ElasticsearchSearchService searchService,
+            ObjectMapper objectMapper,
+            @Value("${search.ingest.stream.chunk-docs:1000}") int chunkDocs,
+            @Value("${search.ingest.stream.chunk-bytes:5242880}") long chunkBytes,
+            @Value("${search.ingest.stream.max-in-flight:4}") int maxInFlight,
+            @Value("${search.ingest.stream.bulk-threads:8}") int bulkThreads) {
+        this.searchService = searchService;
+        this.objectMapper = objectMapper;
+        this.chunkDocs = chunkDocs;
+        this.chunkBytes = chunkBytes;
+        this.maxInFlight = maxInFlight;
+        this.bulkExecutor = Executors.newFixedThreadPool(bulkThreads, r -> {
+            Thread thread = new Thread(r, "ndjson-bulk");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Read NDJSON documents for a tenant from the stream and index them chunk by chunk
+     */
+    public StreamIngestResult ingest(String tenantId, InputStream inputStream) {
+        return ingest(tenantId, inputStream, searchService::indexDocumentsBatch);
+    }
+
+    /**
+     * Read NDJSON documents for a tenant from the stream and hand each chunk to chunkIndexer
+     *
+     * @param chunkIndexer called on a bulk thread, at most max-in-flight at a time per stream
+     */
+    public StreamIngestResult ingest(
+            String tenantId, InputStream inputStream,
+            Function<List<SearchDocument>, ElasticsearchSearchService.BulkIndexResult> chunkIndexer) {
+        long startTime = System.nanoTime();
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        List<ChunkResult> chunks = new ArrayList<>();
+        int skipped = 0;
+        String parseError = null;
+
+        List<SearchDocument> chunk = new ArrayList<>();
+        long chunkStartOffset = 0;
+
+        try (JsonParser parser = objectMapper.createParser(inputStream)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token != JsonToken.START_OBJECT) {
+                    skipped++;
+                    parser.skipChildren();
+                    continue;
+                }
+
+                // Only the current document is materialized
+                JsonNode node = parser.readValueAsTree();
+                SearchDocument document = toDocument(tenantId, node);
+                if (document == null) {
+                    skipped++;
+                    continue;
+                }
+                chunk.add(document);
+
+                long offset = parser.currentLocation().getByteOffset();
+                if (chunk.size() >= chunkDocs || offset - chunkStartOffset >= chunkBytes) {
+                    submitChunk(chunks, chunk, inFlight, chunkIndexer);
+                    chunk = new ArrayList<>();
+                    chunkStartOffset = offset;
+                }
+            }
+        } catch (IOException e) {
+            // A malformed line ends the stream; everything before it is still indexed
+            log.warn("Stopped reading NDJSON stream for tenant {}: {}", tenantId, e.getMessage());
+            parseError = e.getMessage();
+        }
+
+        if (!chunk.isEmpty()) {
+            submitChunk(chunks, chunk, inFlight, chunkIndexer);
+        }
+
+        // Wait for the remaining in-flight bulks
+        inFlight.acquireUninterruptibly(maxInFlight);
+
+        int indexed = 0;
+        int failed = 0;
+        synchronized (chunks) {
+            for (ChunkResult result : chunks) {
+                indexed += result.getIndexed();
+                failed += result.getFailed();
+            }
+        }
+
+        double timeMs = (System.nanoTime() - startTime) / 1_000_000.0;
+        log.info("Streamed {} documents for tenant {} in {} chunks ({} failed, {} skipped) in {}ms",
+                indexed + failed, tenantId, chunks.size(), failed, skipped, timeMs);
+
+        return new StreamIngestResult(indexed, failed, skipped, timeMs, parseError, chunks);
+    }
+
+    private void submitChunk(List<ChunkResult> chunks, List<SearchDocument> documents, Semaphore inFlight,
+                             Function<List<SearchDocument>, ElasticsearchSearchService.BulkIndexResult> chunkIndexer) {
+        // Blocks the reader while maxInFlight bulks are outstanding
+        inFlight.acquireUninterruptibly();
+        int chunkIndex;
+        synchronized (chunks) {
+            chunkIndex = chunks.size();
+            chunks.add(new ChunkResult(chunkIndex, documents.size(), 0, 0, 0));
+        }
+
+        bulkExecutor.execute(() -> {
+            try {
+                ElasticsearchSearchService.BulkIndexResult result = chunkIndexer.apply(documents);
+                synchronized (chunks) {
+                    chunks.set(chunkIndex, new ChunkResult(chunkIndex, documents.size(),
+                            result.getSuccessCount(), result.getFailureCount(), result.getTimeMs()));
+                }
+            } catch (RuntimeException e) {
+                log.error("Chunk {} failed: {}", chunkIndex, e.getMessage(), e);
+                synchronized (chunks) {
+                    chunks.set(chunkIndex, new ChunkResult(chunkIndex, documents.size(), 0, documents.size(), 0));
+                }
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    private SearchDocument toDocument(String tenantId, JsonNode node) {
+        JsonNode content = node.get("content");
+        if (content == null || !content.isTextual() || content.asText().isEmpty()) {
+            return null;
+        }
+
+        JsonNode docIdNode = node.get("docId");
+        String docId = docIdNode != null && docIdNode.isTextual()
+            ? docIdNode.asText()
+            : UUID.randomUUID().toString();
+
+        JsonNode metadataNode = node.get("metadata");
+        @SuppressWarnings("unchecked")
+        Map<String, Object> metadata = metadataNode != null && metadataNode.isObject()
+            ? objectMapper.convertValue(metadataNode, Map.class)
+            : new HashMap<>();
+
+        return SearchDocument.builder()
+                .docId(docId)
+                .tenantId(tenantId)
+                .content(content.asText())
+                .metadata(metadata)
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        bulkExecutor.shutdown();
+    }
+
+    // Helper classes
+
+    @lombok.Data
+    @lombok.AllArgsConstructor
+    public static class StreamIngestResult {
+        private int indexed;
+        private int failed;
+        private int skipped;
+        private double timeMs;
+        private String parseError;
+        private List<ChunkResult> chunks;
+    }
+
+    @lombok.Data
+    @lombok.AllArgsConstructor
+    public static class ChunkResult {
+        private int chunk;
+        private int documents;
+        private int indexed;
+        private int failed;
+        private double timeMs;
+    }
+}
@@ -0,0 +1,429 @@
+package com.search.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.mapping.DynamicTemplate;
+import co.elastic.clients.elasticsearch._types.mapping.IndexOptions;
+import co.elastic.clients.elasticsearch._types.mapping.TypeMapping;
+import co.elastic.clients.elasticsearch.indices.CreateIndexRequest;
+import co.elastic.clients.elasticsearch.indices.GetIndexResponse;
+import co.elastic.clients.elasticsearch.indices.IndexSettings;
+import co.elastic.clients.elasticsearch.indices.IndexState;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of where each tenant's documents live
+ *
+ * A tenant is either placed in a dedicated index or shares a pooled index
+ * with other small tenants. Either way its documents are addressed by one
+ * stable name, search-docs-{tenant}:
+ * - Dedicated: the index itself, or an alias onto it once promoted
+ * - Shared: a filtered alias on search-shared-{n} that routes by tenant,
+ *   so writes carry the routing and searches touch a single shard. Gets and
+ *   deletes by id don't apply the alias filter, so _ids there are prefixed
+ *   with the tenant's routing (see {@link TenantPlacement#documentId})
+ * - Rollover: an alias over time- or size-bounded search-rollover-{tenant}-nnnnnn
+ *   indices; reads span all of them, writes go to the one marked is_write_index
+ *
+ * Avoids a lookup round trip on every read and write:
+ * - Known placements are remembered in a bounded Caffeine cache
+ * - Missing placements are created once; concurrent first writes for the
+ *   same tenant wait on a single creation instead of racing
+ * - Entries are dropped when Elasticsearch reports index_not_found
+ */
+@Slf4j
+@Component
+public class TenantIndexRegistry {
+
+    /**
+     * Default index settings: 5 shards, 2 replicas for fault tolerance
+     */
+    private static final int DEFAULT_SHARDS = 5;
+    private static final int DEFAULT_REPLICAS = 2;
+    // Longer metadata strings are stored but not indexed; keyword terms are capped at 32kB
+    private static final int METADATA_IGNORE_ABOVE = 1024;
+
+    private static final String TENANT_PREFIX = "search-docs-";
+    private static final String SHARED_PREFIX = "search-shared-";
+    private static final String PROMOTED_PREFIX = "search-tenant-";
+    static final String ROLLOVER_PREFIX = "search-rollover-";
+    public static final String SHARED_PATTERN = SHARED_PREFIX + "*";
+    public static final String ROLLOVER_PATTERN = ROLLOVER_PREFIX + "*";
+    private static final String ROLLOVER_TEMPLATE = "search-rollover";
+
+    // Between the tenant's routing and its own id in a shared index's _id
+    static final String ID_SEPARATOR = ":";
+
+    private static final String INDEX_NOT_FOUND = "index_not_found_exception";
+    private static final String INDEX_ALREADY_EXISTS = "resource_already_exists_exception";
+
+    /**
+     * Where new tenants are placed; existing tenants keep their placement
+     */
+    public enum Mode {
+        DEDICATED,
+        SHARED,
+        ROLLOVER
+    }
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final Mode mode;
+    private final int sharedIndices;
+    private final Duration refreshInterval;
+    private final Cache<String, TenantPlacement> placements;
+    private final Set<String> knownSharedIndices = ConcurrentHashMap.newKeySet();
+    private volatile boolean rolloverTemplateInstalled;
+
+    public TenantIndexRegistry(
+            ElasticsearchClient elasticsearchClient,
+            @Value("${search.index-registry.max-size:10000}") long maxSize,
+            @Value("${search.index-registry.ttl:10m}") Duration ttl,
+            @Value("${search.placement.mode:DEDICATED}") Mode mode,
+            @Value("${search.placement.shared-indices:1}") int sharedIndices,
+            @Value("${search.refresh.interval:1s}") Duration refreshInterval) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.mode = mode;
+        this.sharedIndices = sharedIndices;
+        this.refreshInterval = refreshInterval;
+        this.placements = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * Name the tenant's documents are read and written through, whatever their placement
+     *
+     * Stable across placements and promotion, so reads need no lookup.
+     */
+    public static String targetName(String tenantId) {
+        // Normalize tenant ID for Elasticsearch index naming
+        // Index names must be lowercase
+        return TENANT_PREFIX + normalize(tenantId);
+    }
+
+    /**
+     * Name of the dedicated index a shared tenant moves to when promoted
+     */
+    static String promotedIndexName(String tenantId) {
+        return PROMOTED_PREFIX + normalize(tenantId);
+    }
+
+    /**
+     * Name of the first index behind a rollover tenant's alias; rollover increments the suffix
+     */
+    static String firstRolloverIndexName(String tenantId) {
+        return ROLLOVER_PREFIX + normalize(tenantId) + "-000001";
+    }
+
+    /**
+     * Routing value of a shared tenant; normalized so it never contains a comma
+     */
+    static String routing(String tenantId) {
+        return normalize(tenantId);
+    }
+
+    private static String normalize(String tenantId) {
+        return tenantId.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9-]", "-");
+    }
+
+    /**
+     * Ensure the tenant has a placement, creating one in the configured mode if not
+     *
+     * @return the placement, which decides the _id each document is written under
+     */
+    public TenantPlacement ensurePlacement(String tenantId) throws IOException {
+        try {
+            // Caffeine runs the loader at most once per key; other callers block on it
+            return placements.get(tenantId, id -> {
+                try {
+                    TenantPlacement existing = lookup(id);
+                    return existing != null ? existing : create(id);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * The tenant's placement, consulting the cluster only on a miss
+     *
+     * @return null if the tenant has no documents yet
+     */
+    public TenantPlacement placement(String tenantId) throws IOException {
+        TenantPlacement placement = placements.getIfPresent(tenantId);
+        if (placement != null) {
+            return placement;
+        }
+
+        // Only positive answers are cached so a later create is picked up immediately
+        placement = lookup(tenantId);
+        if (placement != null) {
+            placements.put(tenantId, placement);
+        }
+        return placement;
+    }
+
+    /**
+     * Check whether the tenant has an index, consulting the cluster only on a miss
+     */
+    public boolean indexExists(String tenantId) throws IOException {
+        return placement(tenantId) != null;
+    }
+
+    /**
+     * The tenant's placement if already known, without asking the cluster
+     *
+     * @return null if it would take a lookup
+     */
+    public TenantPlacement knownPlacement(String tenantId) {
+        return placements.getIfPresent(tenantId);
+    }
+
+    /**
+     * Look the tenant's placement up again, e.g. when an id missed through a shared one
+     *
+     * Another instance may have promoted the tenant while this one still
+     * caches the shared placement.
+     *
+     * @return null if the tenant has no documents
+     */
+    public TenantPlacement reload(String tenantId) throws IOException {
+        invalidate(tenantId);
+        return placement(tenantId);
+    }
+
+    /**
+     * Forget a tenant's placement, e.g. after its index was deleted or it was promoted
+     */
+    public void invalidate(String tenantId) {
+        placements.invalidate(tenantId);
+    }
+
+    /**
+     * Forget whichever tenant is addressed by this name, e.g. after its alias rolled over
+     */
+    public void invalidateTarget(String target) {
+        placements.asMap().values().removeIf(placement -> placement.target().equals(target));
+    }
+
+    /**
+     * Drop the cached entry if the exception says the index is gone
+     *
+     * @return true if the exception was an index_not_found error
+     */
+    public boolean handleIndexNotFound(String tenantId, ElasticsearchException e) {
+        if (isIndexNotFound(e)) {
+            log.warn("Index for tenant {} no longer exists, dropping from registry", tenantId);
+            invalidate(tenantId);
+            return true;
+        }
+        return false;
+    }
+
+    public static boolean isIndexNotFound(ElasticsearchException e) {
+        return e.error() != null && INDEX_NOT_FOUND.equals(e.error().type());
+    }
+
+    /**
+     * Resolve the tenant's name to the index behind it
+     */
+    private TenantPlacement lookup(String tenantId) throws IOException {
+        String target = targetName(tenantId);
+        GetIndexResponse response;
+        try {
+            response = elasticsearchClient.indices().get(g -> g.index(target));
+        } catch (ElasticsearchException e) {
+            if (isIndexNotFound(e)) {
+                return null;
+            }
+            throw e;
+        }
+        // An alias of ours points at one index, or at a rollover series with one write index
+        String index = response.result().keySet().iterator().next();
+        if (index.startsWith(ROLLOVER_PREFIX)) {
+            for (Map.Entry<String, IndexState> entry : response.result().entrySet()) {
+                var alias = entry.getValue().aliases().get(target);
+                if (alias != null && Boolean.TRUE.equals(alias.isWriteIndex())) {
+                    index = entry.getKey();
+                }
+            }
+            return new TenantPlacement(target, index, false, true);
+        }
+        return new TenantPlacement(target, index, index.startsWith(SHARED_PREFIX), false);
+    }
+
+    private TenantPlacement create(String tenantId) throws IOException {
+        String target = targetName(tenantId);
+        if (mode == Mode.DEDICATED) {
+            createIndex(target, false);
+            return new TenantPlacement(target, target, false, false);
+        }
+        if (mode == Mode.ROLLOVER) {
+            return createRollover(tenantId);
+        }
+
+        String sharedIndex = SHARED_PREFIX + Math.floorMod(tenantId.hashCode(), sharedIndices);
+        if (!knownSharedIndices.contains(sharedIndex)) {
+            createIndex(sharedIndex, true);
+            knownSharedIndices.add(sharedIndex);
+        }
+        log.info("Placing tenant {} in shared index {}", tenantId, sharedIndex);
+        elasticsearchClient.indices().updateAliases(u -> u
+            .actions(a -> a.add(add -> add
+                .index(sharedIndex)
+                .alias(target)
+                .filter(q -> q.term(t -> t.field("tenant_id").value(tenantId)))
+                .routing(routing(tenantId))
+            ))
+        );
+        return new TenantPlacement(target, sharedIndex, true, false);
+    }
+
+    /**
+     * Start a tenant's rollover series: the first index, with the tenant's name as its write alias
+     */
+    private TenantPlacement createRollover(String tenantId) throws IOException {
+        String target = targetName(tenantId);
+        String firstIndex = firstRolloverIndexName(tenantId);
+        if (!rolloverTemplateInstalled) {
+            installRolloverTemplate();
+            rolloverTemplateInstalled = true;
+        }
+
+        log.info("Creating rollover index {} for tenant {}", firstIndex, tenantId);
+        try {
+            elasticsearchClient.indices().create(c -> c
+                .index(firstIndex)
+                .aliases(target, a -> a.isWriteIndex(true))
+            );
+        } catch (ElasticsearchException e) {
+            if (e.error() == null || !INDEX_ALREADY_EXISTS.equals(e.error().type())) {
+                throw e;
+            }
+            log.debug("Index {} was created concurrently", firstIndex);
+        }
+        return new TenantPlacement(target, firstIndex, false, true);
+    }
+
+    /**
+     * Settings and mapping for every rollover index, including the ones rollover creates
+     */
+    private void installRolloverTemplate() throws IOException {
+        elasticsearchClient.indices().putIndexTemplate(t -> t
+            .name(ROLLOVER_TEMPLATE)
+            .indexPatterns(ROLLOVER_PATTERN)
+            .template(tm -> tm
+                .settings(s -> indexSettings(s))
+                .mappings(m -> documentMapping(m, false))
+            )
+        );
+    }
+
+    /**
+     * Create an index with the document mapping
+     *
+     * @param shared require _routing so no document lands outside its tenant's shard
+     * @return false if it already existed
+     */
+    boolean createIndex(String indexName, boolean shared) throws IOException {
+        log.info("Creating index: {}", indexName);
+
+        CreateIndexRequest createRequest = CreateIndexRequest.of(c -> c
+            .index(indexName)
+            .settings(s -> indexSettings(s))
+            .mappings(m -> documentMapping(m, shared))
+        );
+
+        try {
+            elasticsearchClient.indices().create(createRequest);
+            log.info("Index created successfully: {}", indexName);
+            return true;
+        } catch (ElasticsearchException e) {
+            // Another service instance created it first
+            if (e.error() == null || !INDEX_ALREADY_EXISTS.equals(e.error().type())) {
+                throw e;
+            }
+            log.debug("Index {} was created concurrently", indexName);
+            return false;
+        }
+    }
+
+    private IndexSettings.Builder indexSettings(IndexSettings.Builder s) {
+        return s
+            .numberOfShards(String.valueOf(DEFAULT_SHARDS))
+            .numberOfReplicas(String.valueOf(DEFAULT_REPLICAS))
+            // Widened per tenant by RefreshManager while it ingests in bursts
+            .refreshInterval(t -> t.time(refreshInterval.toMillis() + "ms"));
+    }
+
+    private static TypeMapping.Builder documentMapping(TypeMapping.Builder m, boolean shared) {
+        if (shared) {
+            m.routing(r -> r.required(true));
+        }
+        return m
+            // Offsets in the postings let the highlighter skip re-analyzing large documents
+            .properties("content", p -> p.text(t -> t.analyzer("standard").indexOptions(IndexOptions.Offsets)))
+            .properties("doc_id", p -> p.keyword(k -> k))
+            .properties("tenant_id", p -> p.keyword(k -> k))
+            .properties("timestamp", p -> p.date(d -> d))
+            .properties("metadata", p -> p.object(o -> o.enabled(true)))
+            // Metadata strings are exact values for filters and facets; keyword terms are
+            // cheap to cache in filter context and aggregate without fielddata. The list
+            // overload, since the varargs one makes a generic array
+            .dynamicTemplates(List.of(Map.of("metadata_strings", DynamicTemplate.of(d -> d
+                .pathMatch("metadata.*")
+                .matchMappingType("string")
+                .mapping(p -> p.keyword(k -> k.ignoreAbove(METADATA_IGNORE_ABOVE)))
+            ))));
+    }
+
+    /**
+     * Where a tenant's documents live
+     *
+     * @param target name reads and writes go through
+     * @param index    concrete index behind it; the write index of a rollover series
+     * @param shared   whether other tenants share the index
+     * @param rollover whether the name spans a series of rollover indices
+     */
+    public record TenantPlacement(String target, String index, boolean shared, boolean rollover) {
+
+        /**
+         * _id a document of the tenant is stored under
+         *
+         * Tenants routed to the same shard of a shared index would otherwise
+         * overwrite, read and delete each other's documents by id. The prefix
+         * is the tenant's routing, which is what follows the target's prefix.
+         */
+        public String documentId(String docId) {
+            return shared ? target.substring(TENANT_PREFIX.length()) + ID_SEPARATOR + docId : docId;
+        }
+
+        /**
+         * Routing sent with every write, or null if the index isn't shared
+         *
+         * The shared alias would add it anyway. Sending it explicitly is what
+         * lets a promoted index tell writes through a stale shared placement
+         * from writes through its own.
+         */
+        public String routing() {
+            return shared ? target.substring(TENANT_PREFIX.length()) : null;
+        }
+    }
+}
@@ -0,0 +1,433 @@
+package com.search.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.Refresh;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import com.search.model.SearchDocument;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Write-behind group commit for single-document writes
+ *
+ * Documents are appended to a per-tenant buffer and sent as one BulkRequest
+ * when the buffer reaches a document count, a payload size or its linger time.
+ * Callers get a future that completes according to the configured durability:
+ * - ENQUEUE: as soon as the document is buffered
+ * - BULK: when the bulk containing it succeeds
+ * - REFRESH: when that bulk is also visible to search
+ *
+ * A tenant's bulks are sent one after another, in the order they were cut,
+ * so a later version of a document always lands after an earlier one.
+ * Different tenants flush in parallel on flush-threads. A tenant's buffer
+ * is dropped once it has been empty and idle for a minute.
+ */
+@Slf4j
+@Component
+public class WriteBehindIndexer {
+
+    private static final long IDLE_EVICTION_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    public enum Durability {
+        ENQUEUE,
+        BULK,
+        REFRESH
+    }
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final TenantIndexRegistry indexRegistry;
+    private final SearchResultCache resultCache;
+    private final DocumentCache documentCache;
+    private final RefreshManager refreshManager;
+    private final RolloverManager rolloverManager;
+
+    private final boolean enabled;
+    private final Durability durability;
+    private final int maxDocs;
+    private final long maxBytes;
+    private final long lingerNanos;
+
+    private final Map<String, TenantBuffer> buffers = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService flushExecutor;
+    // Buffering and scheduling hold the read lock; shutdown takes the write lock to drain
+    private final ReadWriteLock lifecycle = new ReentrantReadWriteLock();
+    private boolean shuttingDown = false;
+
+    public WriteBehindIndexer(
+            ElasticsearchClient elasticsearchClient,
+            TenantIndexRegistry indexRegistry,
+            SearchResultCache resultCache,
+            DocumentCache documentCache,
+            RefreshManager refreshManager,
+            RolloverManager rolloverManager,
+            @Value("${search.ingest.write-behind.enabled:false}") boolean enabled,
+            @Value("${search.ingest.write-behind.durability:BULK}") Durability durability,
+            @Value("${search.ingest.write-behind.max-docs:500}") int maxDocs,
+            @Value("${search.ingest.write-behind.max-bytes:5242880}") long maxBytes,
+            @Value("${search.ingest.write-behind.linger:50ms}") Duration linger,
+            @Value("${search.ingest.write-behind.flush-threads:4}") int flushThreads) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.indexRegistry = indexRegistry;
+        this.resultCache = resultCache;
+        this.documentCache = documentCache;
+        this.refreshManager = refreshManager;
+        this.rolloverManager = rolloverManager;
+        this.enabled = enabled;
+        this.durability = durability;
+        this.maxDocs = maxDocs;
+        this.maxBytes = maxBytes;
+        this.lingerNanos = linger.toNanos();
+
+        if (enabled) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "write-behind-linger"));
+            this.flushExecutor = Executors.newFixedThreadPool(flushThreads, r -> daemon(r, "write-behind-flush"));
+            long tickMs = Math.max(1, linger.toMillis() / 2);
+            scheduler.scheduleAtFixedRate(this::flushExpired, tickMs, tickMs, TimeUnit.MILLISECONDS);
+            log.info("Write-behind ingestion enabled: durability={}, maxDocs={}, maxBytes={}, linger={}",
+                    durability, maxDocs, maxBytes, linger);
+        } else {
+            this.scheduler = null;
+            this.flushExecutor = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Whether writes are acknowledged while still buffered, so their consistency token can't cover them
+     */
+    public boolean acknowledgesBeforeFlush() {
+        return enabled && durability == Durability.ENQUEUE;
+    }
+
+    /**
+     * Buffer a document for the next bulk of its tenant
+     *
+     * @return future completing with the document id once the configured durability is reached
+     */
+    public CompletableFuture<String> submit(SearchDocument document) {
+        PendingWrite pending = new PendingWrite(document, BulkIndexer.estimateBytes(document));
+        lifecycle.readLock().lock();
+        try {
+            if (shuttingDown) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Write-behind indexer is shutting down"));
+            }
+            // A buffer evicted since it was looked up refuses the write; its replacement takes it
+            TenantBuffer buffer;
+            do {
+                buffer = buffers.computeIfAbsent(document.getTenantId(), TenantBuffer::new);
+            } while (!buffer.add(pending));
+        } finally {
+            lifecycle.readLock().unlock();
+        }
+
+        if (durability == Durability.ENQUEUE) {
+            return CompletableFuture.completedFuture(document.getDocId());
+        }
+        return pending.future;
+    }
+
+    /**
+     * Send the tenant's buffered writes and wait until every write submitted so far is done
+     *
+     * Call before deleting the tenant's documents, so a buffered write can't
+     * land after the delete and bring a document back.
+     */
+    public void flushTenant(String tenantId) {
+        if (!enabled) {
+            return;
+        }
+        CompletableFuture<Void> flushed;
+        lifecycle.readLock().lock();
+        try {
+            TenantBuffer buffer = buffers.get(tenantId);
+            if (buffer == null) {
+                return;
+            }
+            // After shutdown the buffer is already drained and its bulks are queued
+            flushed = buffer.drainAll();
+        } finally {
+            lifecycle.readLock().unlock();
+        }
+        // Failed writes have failed their callers; the delete may go ahead either way
+        flushed.exceptionally(e -> null).join();
+    }
+
+    /**
+     * Flush buffers whose oldest document has waited at least the linger time, and drop idle ones
+     */
+    private void flushExpired() {
+        long now = System.nanoTime();
+        lifecycle.readLock().lock();
+        try {
+            if (shuttingDown) {
+                return;
+            }
+            for (TenantBuffer buffer : buffers.values()) {
+                buffer.drainIfOlderThan(now - lingerNanos);
+                if (buffer.isIdleSince(now - IDLE_EVICTION_NANOS)) {
+                    buffers.computeIfPresent(buffer.tenantId,
+                        (tenantId, current) -> current == buffer && buffer.retireIfIdle(now - IDLE_EVICTION_NANOS)
+                            ? null : current);
+                }
+            }
+        } finally {
+            lifecycle.readLock().unlock();
+        }
+    }
+
+    private void flush(String tenantId, List<PendingWrite> writes) {
+        long startTime = System.nanoTime();
+        try {
+            TenantIndexRegistry.TenantPlacement placement = indexRegistry.ensurePlacement(tenantId);
+
+            BulkRequest.Builder bulkBuilder = new BulkRequest.Builder();
+            for (PendingWrite write : writes) {
+                SearchDocument doc = write.document;
+                bulkBuilder.operations(op -> op
+                    .index(idx -> idx
+                        .index(placement.target())
+                        .id(placement.documentId(doc.getDocId()))
+                        .routing(placement.routing())
+                        .document(doc)
+                    )
+                );
+            }
+            if (durability == Durability.REFRESH) {
+                bulkBuilder.refresh(Refresh.WaitFor);
+            }
+
+            BulkResponse response = elasticsearchClient.bulk(bulkBuilder.build());
+            if (placement.rollover()) {
+                RolloverManager.WrittenCopies written = new RolloverManager.WrittenCopies();
+                for (int i = 0; i < writes.size(); i++) {
+                    BulkResponseItem item = response.items().get(i);
+                    if (item.error() == null) {
+                        written.add(tenantId, item.index(), writes.get(i).document.getDocId());
+                    }
+                }
+                rolloverManager.deleteOlderCopies(written, durability == Durability.REFRESH);
+            }
+            refreshManager.recordWrite(tenantId, writes.size());
+            resultCache.invalidateTenant(tenantId);
+            writes.forEach(write -> documentCache.invalidate(tenantId, write.document.getDocId()));
+
+            // Bulk responses keep the order of the request operations
+            List<BulkResponseItem> items = response.items();
+            int failures = 0;
+            for (int i = 0; i < writes.size(); i++) {
+                BulkResponseItem item = items.get(i);
+                if (item.error() == null) {
+                    writes.get(i).future.complete(writes.get(i).document.getDocId());
+                } else {
+                    failures++;
+                    writes.get(i).future.completeExceptionally(
+                        new RuntimeException("Failed to index document: " + item.error().reason()));
+                }
+            }
+
+            log.debug("Write-behind flushed {} documents for tenant {} ({} failures) in {}ms",
+                    writes.size(), tenantId, failures, (System.nanoTime() - startTime) / 1_000_000.0);
+
+        } catch (IOException | RuntimeException e) {
+            if (e instanceof ElasticsearchException ee) {
+                indexRegistry.handleIndexNotFound(tenantId, ee);
+            }
+            log.error("Write-behind flush failed for tenant {} ({} documents): {}",
+                    tenantId, writes.size(), e.getMessage(), e);
+            writes.forEach(w -> w.future.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * Stop accepting writes and send everything still buffered before the context closes
+     *
+     * Writes not sent within 30s are failed rather than left waiting.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        List<CompletableFuture<Void>> flushes = new ArrayList<>();
+        lifecycle.writeLock().lock();
+        try {
+            // No write can be buffered once this is set, so the drain below is the last
+            shuttingDown = true;
+            for (TenantBuffer buffer : buffers.values()) {
+                flushes.add(buffer.drainAll());
+            }
+        } finally {
+            lifecycle.writeLock().unlock();
+        }
+        scheduler.shutdown();
+
+        // Chained bulks are handed to the executor as their predecessors finish,
+        // so it must keep accepting work until every chain is done
+        try {
+            CompletableFuture.allOf(flushes.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            log.warn("Write-behind buffers did not drain within 30s");
+        }
+        flushExecutor.shutdownNow();
+
+        int failed = 0;
+        for (TenantBuffer buffer : buffers.values()) {
+            failed += buffer.failUnsent();
+        }
+        if (failed > 0) {
+            log.warn("Write-behind indexer failed {} unsent documents on shutdown", failed);
+        } else {
+            log.info("Write-behind indexer drained its buffers on shutdown");
+        }
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread thread = new Thread(r, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    // Helper classes
+
+    private static final class PendingWrite {
+        private final SearchDocument document;
+        private final int bytes;
+        private final CompletableFuture<String> future = new CompletableFuture<>();
+
+        private PendingWrite(SearchDocument document, int bytes) {
+            this.document = document;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Buffered writes of one tenant and the chain of its bulks
+     *
+     * Draining and chaining happen under the same lock, so bulks are
+     * sent in the order they were cut, one at a time.
+     */
+    private final class TenantBuffer {
+        private final String tenantId;
+        private List<PendingWrite> writes = new ArrayList<>();
+        private long bytes = 0;
+        private long firstEnqueuedNanos = 0;
+        // Completes once every bulk cut so far has been sent
+        private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+        private final List<List<PendingWrite>> unsent = new ArrayList<>();
+        private long lastAddNanos = System.nanoTime();
+        // Set once removed from buffers; add() then refuses writes
+        private boolean retired;
+
+        private TenantBuffer(String tenantId) {
+            this.tenantId = tenantId;
+        }
+
+        /**
+         * @return false if the buffer was retired and the write must go to its replacement
+         */
+        synchronized boolean add(PendingWrite write) {
+            if (retired) {
+                return false;
+            }
+            lastAddNanos = System.nanoTime();
+            if (writes.isEmpty()) {
+                firstEnqueuedNanos = lastAddNanos;
+            }
+            writes.add(write);
+            bytes += write.bytes;
+            if (writes.size() >= maxDocs || bytes >= maxBytes) {
+                drain();
+            }
+            return true;
+        }
+
+        /**
+         * Nothing buffered or in flight, and no write since the cutoff
+         */
+        synchronized boolean isIdleSince(long cutoffNanos) {
+            return writes.isEmpty() && tail.isDone() && lastAddNanos - cutoffNanos <= 0;
+        }
+
+        /**
+         * Retire the buffer if it is still idle; called while removing it from buffers
+         */
+        synchronized boolean retireIfIdle(long cutoffNanos) {
+            retired = isIdleSince(cutoffNanos);
+            return retired;
+        }
+
+        synchronized void drainIfOlderThan(long cutoffNanos) {
+            if (!writes.isEmpty() && firstEnqueuedNanos - cutoffNanos <= 0) {
+                drain();
+            }
+        }
+
+        /**
+         * @return completes once everything buffered so far has been sent
+         */
+        synchronized CompletableFuture<Void> drainAll() {
+            if (!writes.isEmpty()) {
+                drain();
+            }
+            return tail;
+        }
+
+        /**
+         * Fail writes whose bulk never ran, e.g. when shutdown timed out
+         */
+        synchronized int failUnsent() {
+            int failed = 0;
+            for (List<PendingWrite> batch : unsent) {
+                for (PendingWrite write : batch) {
+                    if (write.future.completeExceptionally(
+                            new IllegalStateException("Write-behind indexer shut down before the write was sent"))) {
+                        failed++;
+                    }
+                }
+            }
+            unsent.clear();
+            return failed;
+        }
+
+        private void drain() {
+            List<PendingWrite> batch = writes;
+            writes = new ArrayList<>();
+            bytes = 0;
+            unsent.add(batch);
+            // flush never throws, so the chain always moves on to the next bulk
+            tail = tail.thenRunAsync(() -> {
+                flush(tenantId, batch);
+                sent(batch);
+            }, flushExecutor);
+        }
+
+        private synchronized void sent(List<PendingWrite> batch) {
+            unsent.remove(batch);
+        }
+    }
+}